@@ -1,6 +1,5 @@
 package com.common.tools;
 
-import android.os.Environment;
 import android.util.Log;
 
 import com.demo.my.androiddemo.BuildConfig;
@@ -8,9 +7,7 @@ import com.demo.my.androiddemo.BuildConfig;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.Locale;
 
 /**
  * Created by benzhiqiang on 2023/7/27.
@@ -20,59 +17,142 @@ public class VLog {
 
     private static String TAG = "chunbo:";
     private static final String LOG_FILE = "chunbo-log.txt";
+    private static final int MAX_LINE_LENGTH = 1000;//i()每行最大长度
+
+    //日志级别（android.util.Log的级别）：低于这个级别的不输出，也不拼接字符串。默认调试包输出DEBUG及以上，正式包INFO及以上
+    private static volatile int level = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+
+    //延迟生成的日志内容：只在级别开启时调用
+    public interface Message {
+        String get();
+    }
+
+    public static void setLevel(int level) {
+        VLog.level = level;
+    }
+
+    //是否输出这个级别的日志：拼接复杂内容前先判断
+    public static boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+
+    //**************************************** VERBOSE：热路径上的调试信息，默认关闭 ****************************************//
+
+    public static void v(String title, String format, int arg) {
+        if (Log.VERBOSE >= level) {
+            Log.v(TAG + title, String.format(Locale.US, format, arg));
+        }
+    }
+
+    public static void v(String title, String format, int arg1, int arg2) {
+        if (Log.VERBOSE >= level) {
+            Log.v(TAG + title, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
+
+    public static void v(String title, String format, float arg) {
+        if (Log.VERBOSE >= level) {
+            Log.v(TAG + title, String.format(Locale.US, format, arg));
+        }
+    }
+
+    public static void v(String title, Message message) {
+        if (Log.VERBOSE >= level) {
+            Log.v(TAG + title, message.get());
+        }
+    }
+
+    //**************************************** DEBUG ****************************************//
 
     //打印Debug信息
     public static void d(String content) {
-        Log.d(TAG, content);
+        if (Log.DEBUG >= level) {
+            Log.d(TAG, content);
+        }
     }
 
     public static void d(String title, String content) {
-        Log.d(TAG + title, content);
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, content);
+        }
     }
 
-    //打印普通信息
-    public static void i(String title, String responsString) {
-        VLog.d("开始处理", title);
-
-        int index = 0;
-        int maxLength = 1000;//每行最大长度
-        String _printStr;
-
-        while (index < responsString.length()) {
-            if (responsString.length() <= index + maxLength) {// java的字符不允许指定超过总的长度end
-                _printStr = responsString.substring(index);
-            } else {
-                _printStr = responsString.substring(index, index + maxLength);
-            }
+    //格式化的内容（如"索引：%d，数据：%d"）：级别关闭时不格式化，也不装箱
+    public static void d(String title, String format, int arg) {
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, String.format(Locale.US, format, arg));
+        }
+    }
 
-            index += maxLength;
+    public static void d(String title, String format, int arg1, int arg2) {
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
 
-            VLog.d(_printStr.trim());
+    public static void d(String title, String format, long arg) {
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, String.format(Locale.US, format, arg));
+        }
+    }
 
+    public static void d(String title, String format, float arg) {
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, String.format(Locale.US, format, arg));
         }
+    }
 
+    public static void d(String title, Message message) {
+        if (Log.DEBUG >= level) {
+            Log.d(TAG + title, message.get());
+        }
     }
 
+    //**************************************** INFO ****************************************//
 
-    public static void logToFile(String content) {
+    //打印普通信息：长内容按MAX_LINE_LENGTH分行，每行去掉首尾空白
+    public static void i(String title, String responsString) {
+        if (Log.INFO < level) {
+            return;
+        }
 
-        try {
+        Log.i(TAG + "开始处理", title);
 
-            File logFile = new File(Environment.getExternalStorageDirectory(), LOG_FILE);
-            FileWriter fw = new FileWriter(logFile, true);
-            fw.write(content);
-            fw.close();
+        int length = responsString.length();
+        for (int index = 0; index < length; index += MAX_LINE_LENGTH) {
+            int start = index;
+            int end = Math.min(length, index + MAX_LINE_LENGTH);
 
-            VLog.d("日志文件路径：", Environment.getExternalStorageDirectory() + "/" + LOG_FILE);
+            //在原字符串上确定去掉首尾空白后的范围，每行只生成一次字符串（不需要先截取再trim）
+            while (start < end && responsString.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && responsString.charAt(end - 1) <= ' ') {
+                end--;
+            }
 
-        } catch (IOException e) {
-            VLog.d("日志写入文件异常logToFile");
-            e.printStackTrace();
+            if (start == 0 && end == length) {//一行就能输出完，直接使用原字符串
+                Log.i(TAG, responsString);
+            } else if (start < end) {
+                Log.i(TAG, responsString.substring(start, end));
+            }
         }
     }
 
+    //写入日志文件：只放入缓冲区，由后台线程批量写入，不阻塞调用线程。缓冲区满时丢弃
+    public static void logToFile(String content) {
+        VLogFileWriter.getInstance(LOG_FILE).offer(content);
+    }
+
+    //缓冲区满时丢弃的日志条数（累计）
+    public static long getDroppedLogCount() {
+        return VLogFileWriter.getInstance(LOG_FILE).getDroppedCount();
+    }
+
     public static void printException(String title, Exception e) {
-        VLog.d(title, e.getMessage());
+        if (Log.WARN >= level) {
+            Log.w(TAG + title, String.valueOf(e.getMessage()));
+        }
 
         if (BuildConfig.DEBUG) {
             e.printStackTrace();
@@ -80,7 +160,9 @@ public class VLog {
     }
 
     public static void printException(String title, Error e) {
-        VLog.d(title, e.getMessage());
+        if (Log.WARN >= level) {
+            Log.w(TAG + title, String.valueOf(e.getMessage()));
+        }
 
         if (BuildConfig.DEBUG) {
             e.printStackTrace();
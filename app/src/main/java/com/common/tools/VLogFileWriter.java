@@ -0,0 +1,200 @@
+package com.common.tools;
+
+import android.os.Environment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 日志-异步写文件
+ * <p>
+ * 调用线程只把日志放入定长的无锁环形缓冲区（多个线程写入，一个线程读取），满了直接丢弃并计数，不阻塞；
+ * 后台线程定时取出一批，通过FileChannel追加到文件，超过大小后轮换为备份文件。
+ */
+
+final class VLogFileWriter implements Runnable {
+
+    private static final int CAPACITY = 1024;//缓冲区大小：2的幂
+    private static final int MASK = CAPACITY - 1;
+    private static final long FLUSH_INTERVAL = 500 * 1000000L;//批量写入的间隔：纳秒
+    private static final long MAX_FILE_SIZE = 2 * 1024 * 1024;//单个文件的大小上限，超过后轮换
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile VLogFileWriter instance;
+
+    private final String fileName;
+    private final String backupFileName;
+
+    //环形缓冲区：sequences[i]等于写入位置时可写，等于写入位置+1时可读
+    private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();//下一个写入位置（多个线程竞争）
+    private long head = 0;//下一个读取位置（只有写文件的线程使用）
+
+    private final AtomicLong droppedCount = new AtomicLong();//缓冲区满时丢弃的条数（累计）
+    private long reportedDroppedCount = 0;//已写入文件的丢弃条数
+
+    private final Thread thread;
+    private final StringBuilder batch = new StringBuilder();
+    private FileChannel channel;
+    private File file;
+
+    private VLogFileWriter(String fileName) {
+        this.fileName = fileName;
+        int dot = fileName.lastIndexOf('.');
+        this.backupFileName = dot > 0 ? fileName.substring(0, dot) + ".1" + fileName.substring(dot) : fileName + ".1";
+
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+
+        thread = new Thread(this, "VLog-writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    static VLogFileWriter getInstance(String fileName) {
+        if (instance == null) {
+            synchronized (VLogFileWriter.class) {
+                if (instance == null) {
+                    instance = new VLogFileWriter(fileName);
+                }
+            }
+        }
+        return instance;
+    }
+
+    //放入缓冲区：任意线程调用，不做IO。缓冲区满时丢弃，返回false
+    boolean offer(String content) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) (pos & MASK);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {//还没有被读取：缓冲区满了
+                droppedCount.incrementAndGet();
+                return false;
+            } else {//其他线程已占用，重新取写入位置
+                pos = tail.get();
+            }
+        }
+
+        buffer.set(index, content);
+        sequences.set(index, pos + 1);//发布：写文件的线程可以读取了
+
+        if (pos - head >= CAPACITY / 2) {//超过一半，提前唤醒写入，减少丢弃
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    //取出一条：没有可读的返回null
+    private String poll() {
+        int index = (int) (head & MASK);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        String content = buffer.get(index);
+        buffer.set(index, null);
+        sequences.set(index, head + CAPACITY);//这个位置可以在下一圈写入了
+        head++;
+        return content;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            LockSupport.parkNanos(this, FLUSH_INTERVAL);
+            drain();
+        }
+    }
+
+    //取出缓冲区中所有的日志，一次写入文件
+    private void drain() {
+        String content;
+        while ((content = poll()) != null) {
+            batch.append(content);
+        }
+
+        long dropped = droppedCount.get();
+        if (dropped != reportedDroppedCount) {
+            batch.append("[VLog] 缓冲区已满，丢弃了").append(dropped - reportedDroppedCount).append("条日志\n");
+            reportedDroppedCount = dropped;
+        }
+
+        if (batch.length() == 0) {
+            return;
+        }
+
+        try {
+            write(ByteBuffer.wrap(batch.toString().getBytes(UTF_8)));
+        } catch (IOException e) {
+            VLog.d("日志写入文件异常logToFile");
+            e.printStackTrace();
+            closeChannel();//下一批重新打开
+        }
+
+        if (batch.capacity() > CAPACITY * 64) {//一次的日志特别多时，不长期占用内存
+            batch.setLength(0);
+            batch.trimToSize();
+        } else {
+            batch.setLength(0);
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        if (channel == null) {
+            file = new File(Environment.getExternalStorageDirectory(), fileName);
+            channel = new FileOutputStream(file, true).getChannel();
+            VLog.d("日志文件路径：", file.getAbsolutePath());
+        }
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+
+        if (channel.size() > MAX_FILE_SIZE) {//轮换：当前文件改为备份文件（只保留一个），再写新文件
+            closeChannel();
+            File backup = new File(file.getParentFile(), backupFileName);
+            if (backup.exists() && !backup.delete()) {
+                VLog.d("日志备份文件删除失败");
+            }
+            if (!file.renameTo(backup)) {
+                VLog.d("日志文件轮换失败");
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+}
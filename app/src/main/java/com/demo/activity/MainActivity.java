@@ -18,6 +18,8 @@ import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final int PAGE_SIZE = 10;//每页加载的个数
+
     private PileLayout pileLayout;
 
     @Override
@@ -26,29 +28,42 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.main_activity);
 
         pileLayout = findViewById(R.id.pileLayout);
+        pileLayout.setLifecycle(getLifecycle());//页面暂停时停止轮播
 
         init();
     }
 
 
     private void init() {
-        final List<HomeFocusDetailBean> list_focus = getData();
 
-        pileLayout.setAdapter(new PileLayout.Adapter() {
+        //数据在后台按页加载，加载完成前显示占位卡片
+        pileLayout.setAdapter(new PileLayout.PagedAdapter<HomeFocusDetailBean>(PAGE_SIZE) {
+            @Override
+            protected List<HomeFocusDetailBean> loadPage(int offset, int pageSize) {
+                List<HomeFocusDetailBean> list_focus = getData();
+                int end = Math.min(list_focus.size(), offset + pageSize);
+                return offset < end ? new ArrayList<>(list_focus.subList(offset, end)) : new ArrayList<HomeFocusDetailBean>();
+            }
+
             @Override
-            public int getLayoutId() {
-                return R.layout.home_focus_2023_08_item;
+            public int getItemLayoutId(int viewType) {
+                return R.layout.home_focus_2023_08_item;//后台装载：ViewHolder在createViewHolder中创建
             }
 
             @Override
-            public void bindView(View view, int position) {
-                ImageView imageView = view.findViewById(R.id.imageView);
-                Glide.with(MainActivity.this).load(list_focus.get(position).getPic_url()).into(imageView);
+            public PileLayout.ViewHolder createViewHolder(View itemView, int viewType) {
+                return new FocusViewHolder(itemView);
             }
 
             @Override
-            public int getItemCount() {
-                return list_focus.size();
+            public void onBindItem(PileLayout.ViewHolder holder, HomeFocusDetailBean item, int position) {
+                ImageView imageView = ((FocusViewHolder) holder).imageView;
+                Glide.with(MainActivity.this).load(item.getPic_url()).into(imageView);
+            }
+
+            @Override
+            public void onPrefetchItem(HomeFocusDetailBean item, int position) {
+                Glide.with(MainActivity.this).load(item.getPic_url()).preload();
             }
 
             @Override
@@ -63,6 +78,18 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    //轮播图卡片
+    private static class FocusViewHolder extends PileLayout.ViewHolder {
+
+        ImageView imageView;
+
+        FocusViewHolder(View itemView) {
+            super(itemView);
+            imageView = itemView.findViewById(R.id.imageView);
+        }
+    }
+
+    //模拟接口数据（在加载线程调用）
     private List<HomeFocusDetailBean> getData() {
 
         List<HomeFocusDetailBean> list_focus = new ArrayList<>();//因为控件不支持视图的循环调用，这里需要复制多份数据
@@ -0,0 +1,410 @@
+package com.third.com.bzq.pile;
+
+/**
+ * 轮播图-状态引擎
+ * <p>
+ * 与View无关的轮播状态：卡槽环、每个卡槽的轮播图索引与已绑定的数据库索引、滑动偏移量、松手后的翻页判断（含惯性滑动），
+ * 以及每个卡槽的变换结果（位移、透明度、缩放、层级，保存在数组中）。不依赖Android，PileLayout只负责把结果渲染到子View上，
+ * 也可以直接在JVM上测试、基准测试，或用于其他控件。
+ * <p>
+ * 卡槽即子View的下标，卡槽的顺序不变；卡槽环中偏移是0的卡槽处于隐藏位，偏移是1的是主图。
+ */
+
+public class PileEngine {
+
+    //翻页方向
+    public static final int PAGE_NONE = 0;//不翻页，归位
+    public static final int PAGE_LEFT = 1;//向左翻页：隐藏位的卡槽转到最后面，显示后面的数据
+    public static final int PAGE_RIGHT = -1;//向右翻页：最后一个卡槽转到隐藏位，显示前面的数据
+
+    public static final int NO_INDEX = -1;//卡槽尚未绑定
+
+    static final int FIRST_FRAME_SHOW_INDEX = 1;//卡槽环中偏移是0的是最左边，属于不展示状态，所以第一个展示的偏移是1
+
+    //各卡位静止时的状态：下标 = 卡位 + SLOT_STATE_OFFSET，卡位-2是隐藏位再往左，卡位visibleCount是最后一个再往后（完全透明）
+    private static final int SLOT_STATE_OFFSET = 2;
+    private static final float[] ALPHA_PROFILE = {1f, 0.8f, 0.4f, 0f};//透明度：从主图到最后一个再往后，按深度均匀取值
+    private static final float[] SCALE_PROFILE = {1f, 0.85f, 0.7f, 0.55f};//缩放：同上
+
+    //惯性滑动的摩擦系数：速度按e^(-FLING_FRICTION * t)衰减（与FlingAnimation的默认摩擦一致），滑行距离 = 速度 / FLING_FRICTION
+    private static final float FLING_FRICTION = 4.2f;
+
+    private final int visibleCount;//实际展示的个数
+    private final int slotCount;//卡槽总数（含最左侧的隐藏位）
+    private int itemCount;//数据个数（循环时）或已加载的数据个数（分页数据源）
+    private boolean looping = true;//是否循环：分页数据源不循环，轮播图索引即数据库索引
+
+    //卡槽环
+    private int ringHead = 0;//环头：处于隐藏位的卡槽
+    private final int[] slotPosition;//每个卡槽的轮播图索引（虚拟位置，可以为负数）
+    private final int[] slotDataIndex;//每个卡槽已绑定的数据库索引
+
+    //各卡位静止时的状态
+    private final float[] slotX;//X坐标，下标 = 卡位 + SLOT_STATE_OFFSET
+    private final float[] slotAlpha;//透明度，下标同上
+    private final float[] slotScale;//缩放，下标同上
+    private int pageWidth;//翻一页的距离
+    private int stackStep;//后面的图依次错开的距离
+
+    //滑动
+    private float scrollOffset = 0;//当前的滑动偏移量（向右为正），所有卡槽的变换都由它计算得出
+    private int forcedPage = PAGE_NONE;//松手后强制的翻页方向（定时器运行中为向左翻页）
+
+    //每个卡槽的变换结果，下标即卡槽
+    private final float[] translationX;
+    private final float[] alpha;
+    private final float[] scale;
+    private final float[] z;
+
+    public PileEngine(int visibleCount) {
+        this.visibleCount = Math.max(1, visibleCount);
+        this.slotCount = this.visibleCount + 1;
+
+        slotPosition = new int[slotCount];
+        slotDataIndex = new int[slotCount];
+
+        int stateCount = this.visibleCount + SLOT_STATE_OFFSET + 1;
+        slotX = new float[stateCount];
+        slotAlpha = new float[stateCount];
+        slotScale = new float[stateCount];
+
+        for (int k = -SLOT_STATE_OFFSET; k <= this.visibleCount; k++) {
+            float depth = k <= 0 ? 0 : (float) k / this.visibleCount * (ALPHA_PROFILE.length - 1);//按深度取值
+            slotAlpha[k + SLOT_STATE_OFFSET] = PileMath.interpolateProfile(ALPHA_PROFILE, depth);
+            slotScale[k + SLOT_STATE_OFFSET] = PileMath.interpolateProfile(SCALE_PROFILE, depth);
+        }
+
+        translationX = new float[slotCount];
+        alpha = new float[slotCount];
+        scale = new float[slotCount];
+        z = new float[slotCount];
+
+        reset();
+    }
+
+    //回到初始状态：第一个展示的是数据0，所有卡槽都未绑定
+    public void reset() {
+        ringHead = 0;
+        for (int i = 0; i < slotCount; i++) {
+            slotPosition[i] = i - FIRST_FRAME_SHOW_INDEX;//对应于在dataList中的数据index。这样可以和数据集索引匹配
+            slotDataIndex[i] = NO_INDEX;
+        }
+        scrollOffset = 0;
+    }
+
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    //**************************************** 尺寸 ****************************************//
+
+    //设置尺寸：翻一页的距离，以及后面的图依次错开的距离。没有变化时直接返回
+    public void setGeometry(int pageWidth, int stackStep) {
+        if (this.pageWidth == pageWidth && this.stackStep == stackStep) {
+            return;
+        }
+
+        this.pageWidth = pageWidth;
+        this.stackStep = stackStep;
+
+        //把每个卡位的坐标都计算好
+        for (int k = -SLOT_STATE_OFFSET; k <= visibleCount; k++) {
+            float x;
+            if (k < 0) {//隐藏位，以及隐藏位再往左
+                x = k * pageWidth;
+            } else {//主图，后面的依次错开
+                x = k * stackStep;
+            }
+            slotX[k + SLOT_STATE_OFFSET] = x;
+        }
+
+        if (pageWidth > 0) {//尺寸无效（0或负数）时不截断，以免留下无法归位的偏移量
+            scrollOffset = Math.max(-pageWidth, Math.min(pageWidth, scrollOffset));
+        }
+    }
+
+    public int getPageWidth() {
+        return pageWidth;
+    }
+
+    //**************************************** 数据与卡槽环 ****************************************//
+
+    //数据个数：由使用方在数据变化或布局时设置（缓存），翻页与绑定时不再逐个查询
+    public void setItemCount(int itemCount) {
+        this.itemCount = Math.max(0, itemCount);
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    //是否循环：不循环时（分页数据源，数据个数未知或还在增长）不能翻到第一个之前、已加载的最后一个之后
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    public boolean isLooping() {
+        return looping;
+    }
+
+    //通过positon转换为数据表对应的索引，没有对应的数据时返回NO_INDEX
+    public int getDataIndex(int position) {
+        if (!looping) {
+            return position >= 0 && position < itemCount ? position : NO_INDEX;
+        }
+        return PileMath.getDataIndex(position, itemCount);
+    }
+
+    //卡槽环中偏移为offset的卡槽
+    public int getRingSlot(int offset) {
+        return PileMath.getRingSlot(ringHead, offset, slotCount);
+    }
+
+    //卡槽在环中的偏移：0是隐藏位，1是主图
+    public int getRingOffset(int slot) {
+        return PileMath.getRingOffset(ringHead, slot, slotCount);
+    }
+
+    //卡槽的轮播图索引
+    public int getSlotPosition(int slot) {
+        return slotPosition[slot];
+    }
+
+    //主图的轮播图索引
+    public int getCurrentPosition() {
+        return slotPosition[getRingSlot(FIRST_FRAME_SHOW_INDEX)];
+    }
+
+    //卡槽应当展示的数据库索引，NO_INDEX表示卡槽为空。只有一个数据时只有主图展示，不在后面重复堆叠
+    public int getTargetDataIndex(int slot) {
+        if (looping && itemCount == 1 && getRingOffset(slot) != FIRST_FRAME_SHOW_INDEX) {
+            return NO_INDEX;
+        }
+        return getDataIndex(slotPosition[slot]);
+    }
+
+    //卡槽已绑定的数据库索引
+    public int getBoundDataIndex(int slot) {
+        return slotDataIndex[slot];
+    }
+
+    //记录卡槽已绑定的数据库索引
+    public void setBoundDataIndex(int slot, int dataIndex) {
+        slotDataIndex[slot] = dataIndex;
+    }
+
+    //卡槽是否需要重新绑定（翻一页只有一个卡槽需要）
+    public boolean isSlotStale(int slot) {
+        return getTargetDataIndex(slot) != slotDataIndex[slot];
+    }
+
+    //卡槽环外的第一个轮播图索引：direction为PAGE_LEFT时是最后一个之后，PAGE_RIGHT时是隐藏位之前
+    public int getOutsidePosition(int direction) {
+        return direction == PAGE_LEFT ? slotPosition[getRingSlot(slotCount - 1)] + 1 : slotPosition[ringHead] - 1;
+    }
+
+    //向左翻页：隐藏位的卡槽转到最后面，偏移量换算到新的卡位上
+    public void pageLeft() {
+        ringHead = PileMath.rotateLeft(slotPosition, ringHead, slotCount);
+        scrollOffset += pageWidth;//卡位整体左移了一位
+    }
+
+    //向右翻页：最后一个卡槽转到隐藏位，偏移量换算到新的卡位上
+    public void pageRight() {
+        ringHead = PileMath.rotateRight(slotPosition, ringHead, slotCount);
+        scrollOffset -= pageWidth;//卡位整体右移了一位
+    }
+
+    //把偏移量换算到一页之内：多页的过渡（惯性翻页、jumpBy）中途接着拖动时调用，逐页转动卡槽环，
+    //拖动从换算后的偏移量开始，不会被scrollBy截断为一页。返回转动的页数（正数向左翻页），转动后需要重新绑定失效的卡槽
+    public int normalizeScrollOffset() {
+        if (pageWidth <= 0) {
+            return 0;
+        }
+
+        int pages = 0;
+        while (scrollOffset > pageWidth) {
+            pageRight();
+            pages--;
+        }
+        while (scrollOffset < -pageWidth) {
+            pageLeft();
+            pages++;
+        }
+        return pages;
+    }
+
+    //直接跳转pages页（正数向左翻页，负数向右翻页），之后偏移量归零即为一次过渡：
+    //不超过visibleCount页时转动卡槽环，仍在环内的卡槽无需重新绑定；超过时不逐页转动，直接重新分配所有卡槽的轮播图索引，
+    //偏移量按visibleCount页换算（新的主图从最后面滑到主图的位置）
+    public void jumpBy(int pages) {
+        pages = clampPages(pages);
+
+        if (Math.abs(pages) <= visibleCount) {
+            for (int i = 0; i < pages; i++) {
+                pageLeft();
+            }
+            for (int i = 0; i > pages; i--) {
+                pageRight();
+            }
+            clampTransitionOffset();
+            return;
+        }
+
+        int position = getCurrentPosition() + pages - FIRST_FRAME_SHOW_INDEX;//隐藏位的轮播图索引
+        for (int offset = 0; offset < slotCount; offset++) {
+            slotPosition[getRingSlot(offset)] = position + offset;
+        }
+        scrollOffset += (pages > 0 ? visibleCount : -visibleCount) * pageWidth;
+        clampTransitionOffset();
+    }
+
+    //过渡的起点最多在visibleCount页之外：从未归位的偏移量（如打断的动画）上再翻页时，不会超出卡位的范围
+    private void clampTransitionOffset() {
+        if (pageWidth <= 0) {
+            return;
+        }
+
+        float max = visibleCount * pageWidth;
+        scrollOffset = Math.max(-max, Math.min(max, scrollOffset));
+    }
+
+    //是否可以向左翻页：循环时需要多于一个数据，不循环时主图不是最后一个
+    public boolean canPageLeft() {
+        return looping ? itemCount > 1 : getCurrentPosition() < itemCount - 1;
+    }
+
+    //是否可以向右翻页：循环时需要多于一个数据，不循环时主图不是第一个
+    public boolean canPageRight() {
+        return looping ? itemCount > 1 : getCurrentPosition() > 0;
+    }
+
+    //限制翻页的页数：循环时多于一个数据才翻页，不循环时不超出数据的范围
+    private int clampPages(int pages) {
+        if (looping) {
+            return itemCount > 1 ? pages : 0;
+        }
+
+        int position = getCurrentPosition();
+        return Math.max(-position, Math.min(itemCount - 1 - position, pages));
+    }
+
+    //**************************************** 滑动 ****************************************//
+
+    //拖动：累计偏移量，最多滑动一页，不能翻页的方向不能拖动
+    public void scrollBy(float dx) {
+        float min = canPageLeft() ? -pageWidth : 0;
+        float max = canPageRight() ? pageWidth : 0;
+        scrollOffset = Math.max(min, Math.min(max, scrollOffset + dx));
+    }
+
+    public float getScrollOffset() {
+        return scrollOffset;
+    }
+
+    public void setScrollOffset(float scrollOffset) {
+        this.scrollOffset = scrollOffset;
+    }
+
+    //滑动进度：拖动时-1到1，向右为正（多页的惯性滑动归位时会超出）
+    public float getScrollProgress() {
+        if (pageWidth <= 0) {
+            return 0;
+        }
+        return scrollOffset / pageWidth;
+    }
+
+    //松手后强制的翻页方向：PAGE_NONE表示按偏移量判断
+    public void setForcedPage(int forcedPage) {
+        this.forcedPage = forcedPage;
+    }
+
+    //松手后翻页的页数（正数向左翻页，负数向右翻页）：
+    //强制的直接指定；速度达到minFlingVelocity时按惯性滑动的终点计算，最多visibleCount页，且不会与速度方向相反：
+    //速度与拖动的方向一致（或没有拖动）时至少翻一页，相反时（拖过去又甩回来）最少是归位；否则偏移量超过半页才翻页
+    public int decidePages(float velocity, float minFlingVelocity) {
+        if (forcedPage != PAGE_NONE) {
+            return clampPages(forcedPage);
+        }
+
+        if (velocity != 0 && Math.abs(velocity) >= minFlingVelocity && pageWidth > 0) {//惯性滑动：velocity单位为像素/秒，向右为正
+            float target = scrollOffset + velocity / FLING_FRICTION;//惯性滑动的终点
+            int pages = Math.round(-target / pageWidth);
+            int direction = velocity < 0 ? PAGE_LEFT : PAGE_RIGHT;//手指左滑，显示后面的数据
+
+            boolean isSameDirection = scrollOffset == 0 || (scrollOffset > 0) == (velocity > 0);//速度与拖动的方向一致
+            if (isSameDirection && pages * direction <= 0) {//至少翻一页
+                pages = direction;
+            } else if (pages * direction < 0) {//反向甩回：不会翻到速度的反方向，最少归位
+                pages = PAGE_NONE;
+            }
+            return clampPages(Math.max(-visibleCount, Math.min(visibleCount, pages)));
+        }
+
+        if (scrollOffset > (pageWidth / 2)) {//偏移量超过图片的一半
+            return clampPages(PAGE_RIGHT);
+        } else if (scrollOffset < -(pageWidth / 2)) {
+            return clampPages(PAGE_LEFT);
+        }
+        return PAGE_NONE;
+    }
+
+    //松手（不考虑速度）：只按偏移量判断，或按强制的方向翻页
+    public int settle() {
+        return settle(0, Float.MAX_VALUE);
+    }
+
+    //松手：按decidePages翻页，返回翻页的页数。之后偏移量归零即为静止状态（多页时偏移量会超过一页）
+    public int settle(float velocity, float minFlingVelocity) {
+        int pages = decidePages(velocity, minFlingVelocity);
+        for (int i = 0; i < pages; i++) {
+            pageLeft();
+        }
+        for (int i = 0; i > pages; i--) {
+            pageRight();
+        }
+        clampTransitionOffset();
+        return pages;
+    }
+
+    //**************************************** 变换 ****************************************//
+
+    //按当前的滑动进度计算所有卡槽的变换
+    public void computeTransforms() {
+        computeTransforms(getScrollProgress());
+    }
+
+    //按指定的滑动进度计算所有卡槽的变换，进度为0即静止状态
+    public void computeTransforms(float progress) {
+        for (int i = 0; i < slotCount; i++) {
+            //由卡槽当前所处的（连续的）卡位直接计算，不依赖上一帧的值，避免累计误差
+            float slot = getRingOffset(i) - FIRST_FRAME_SHOW_INDEX + progress;
+
+            translationX[i] = PileMath.interpolate(slotX, slot, SLOT_STATE_OFFSET) - slotX[SLOT_STATE_OFFSET];
+            alpha[i] = PileMath.interpolate(slotAlpha, slot, SLOT_STATE_OFFSET);
+            scale[i] = PileMath.interpolate(slotScale, slot, SLOT_STATE_OFFSET);
+            z[i] = PileMath.getSlotZ(slot, visibleCount);
+        }
+    }
+
+    public float getTranslationX(int slot) {
+        return translationX[slot];
+    }
+
+    public float getAlpha(int slot) {
+        return alpha[slot];
+    }
+
+    public float getScale(int slot) {
+        return scale[slot];
+    }
+
+    public float getZ(int slot) {
+        return z[slot];
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.third.com.bzq.pile;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.common.tools.VLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 轮播图-图片加载（可选）
+ * <p>
+ * 按卡槽的实际尺寸采样解码（inSampleSize），解码后的图片放在按个数限制的LRU缓存中，
+ * 移出缓存且不再显示的图片进入复用池（inBitmap），内存只与卡槽个数有关，与数据个数无关。
+ * <p>
+ * 用法：在Adapter的绑定方法中调用 imageLoader.bind(imageView, url或文件路径)
+ */
+
+public class PileImageLoader {
+
+    private static final int CONNECT_TIMEOUT = 10 * 1000;//网络超时：毫秒
+    private static final ExecutorService DECODE_EXECUTOR = Executors.newSingleThreadExecutor();//解码线程
+
+    private PileLayout pileLayout;//按它的卡槽尺寸解码
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private LruCache<String, Bitmap> cache;//解码后的图片：卡槽个数的2倍
+    private Map<Bitmap, Boolean> cachedBitmaps = new IdentityHashMap<>();//在缓存中的图片
+    private Map<ImageView, Bitmap> displayedBitmaps = new WeakHashMap<>();//正在显示的图片
+    private Map<ImageView, String> pendingKeys = new WeakHashMap<>();//等待加载的图片，用于丢弃过期的结果
+    private Map<ImageView, String> deferredUris = new WeakHashMap<>();//轮播图测量前绑定的图片，测量后再加载
+    private boolean isWaitingForLayout = false;//是否在等待轮播图测量
+    private View.OnLayoutChangeListener layoutListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (pileLayout.getItemWidth() <= 0 || pileLayout.getItemHeight() <= 0) {
+                return;
+            }
+
+            isWaitingForLayout = false;
+            pileLayout.removeOnLayoutChangeListener(this);
+
+            ArrayList<Map.Entry<ImageView, String>> deferred = new ArrayList<>(deferredUris.entrySet());
+            deferredUris.clear();
+            for (Map.Entry<ImageView, String> entry : deferred) {
+                bind(entry.getKey(), entry.getValue());
+            }
+        }
+    };
+
+    private final ArrayList<Bitmap> reusePool = new ArrayList<>();//可复用的图片（inBitmap）
+    private int reusePoolMax;//复用池的大小：卡槽个数
+
+    public PileImageLoader(PileLayout pileLayout) {
+        this.pileLayout = pileLayout;
+
+        int slotCount = pileLayout.getSlotCount();
+        reusePoolMax = slotCount;
+
+        cache = new LruCache<String, Bitmap>(slotCount * 2) {
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                cachedBitmaps.remove(oldValue);
+                releaseIfUnused(oldValue);
+            }
+        };
+    }
+
+    //**************************************** 加载 ****************************************//
+
+    //加载图片：uri可以是http(s)链接，也可以是文件路径。需要在主线程调用
+    public void bind(final ImageView imageView, final String uri) {
+        final int reqWidth = pileLayout.getItemWidth();
+        final int reqHeight = pileLayout.getItemHeight();
+        if (reqWidth <= 0 || reqHeight <= 0) {//尚未测量：不知道卡槽尺寸，测量后再加载，不解码、缓存原图
+            pendingKeys.remove(imageView);
+            display(imageView, null);
+            deferredUris.put(imageView, uri);
+            if (!isWaitingForLayout) {
+                isWaitingForLayout = true;
+                pileLayout.addOnLayoutChangeListener(layoutListener);
+            }
+            return;
+        }
+        deferredUris.remove(imageView);
+
+        final String key = uri + "#" + reqWidth + "x" + reqHeight;
+
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {//命中缓存
+            pendingKeys.remove(imageView);
+            display(imageView, bitmap);
+            return;
+        }
+
+        pendingKeys.put(imageView, key);
+        display(imageView, null);//先清掉旧图，旧图可以复用
+
+        DECODE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap decoded = decode(uri, reqWidth, reqHeight);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (decoded == null) {
+                            return;
+                        }
+
+                        cache.put(key, decoded);
+                        cachedBitmaps.put(decoded, Boolean.TRUE);
+
+                        if (key.equals(pendingKeys.get(imageView))) {//期间没有绑定其他图片
+                            pendingKeys.remove(imageView);
+                            display(imageView, decoded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    //清空缓存与复用池
+    public void clear() {
+        pendingKeys.clear();
+        deferredUris.clear();
+        cache.evictAll();
+
+        synchronized (reusePool) {
+            reusePool.clear();
+        }
+    }
+
+    //显示图片，并释放之前显示的图片
+    private void display(ImageView imageView, Bitmap bitmap) {
+        Bitmap old = displayedBitmaps.get(imageView);
+        if (old == bitmap) {
+            return;
+        }
+
+        imageView.setImageBitmap(bitmap);
+
+        if (bitmap == null) {
+            displayedBitmaps.remove(imageView);
+        } else {
+            displayedBitmaps.put(imageView, bitmap);
+        }
+
+        releaseIfUnused(old);
+    }
+
+    //不在缓存中、也没有显示的图片，放入复用池
+    private void releaseIfUnused(Bitmap bitmap) {
+        if (bitmap == null || cachedBitmaps.containsKey(bitmap) || displayedBitmaps.containsValue(bitmap)) {
+            return;
+        }
+
+        synchronized (reusePool) {
+            if (reusePool.size() < reusePoolMax && bitmap.isMutable()) {
+                reusePool.add(bitmap);
+            }
+        }
+    }
+
+    //**************************************** 解码 ****************************************//
+
+    //按目标尺寸采样解码（解码线程）
+    private Bitmap decode(String uri, int reqWidth, int reqHeight) {
+        try {
+            byte[] data = read(uri);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+            options.inJustDecodeBounds = false;
+            options.inMutable = true;//可以作为inBitmap复用
+
+            int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = takeReusable(width * height * 4);//ARGB_8888
+
+            try {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } catch (IllegalArgumentException e) {//不能复用，重新分配
+                options.inBitmap = null;
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+
+        } catch (IOException e) {
+            VLog.printException("PileImageLoader图片加载异常", e);
+        } catch (OutOfMemoryError e) {
+            VLog.printException("PileImageLoader图片解码内存不足", e);
+        }
+
+        return null;
+    }
+
+    //采样率：2的幂，采样后宽高都不小于目标尺寸
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+
+        if (reqWidth <= 0 || reqHeight <= 0) {//尚未测量，不采样
+            return inSampleSize;
+        }
+
+        while ((width / (inSampleSize * 2)) >= reqWidth && (height / (inSampleSize * 2)) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+
+        return inSampleSize;
+    }
+
+    //从复用池中取出足够大的图片
+    private Bitmap takeReusable(int byteCount) {
+        synchronized (reusePool) {
+            for (int i = 0; i < reusePool.size(); i++) {
+                Bitmap candidate = reusePool.get(i);
+                if (candidate.getAllocationByteCount() >= byteCount) {
+                    return reusePool.remove(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    //读取链接或文件的内容
+    private static byte[] read(String uri) throws IOException {
+        InputStream in;
+        HttpURLConnection connection = null;
+
+        if (uri.startsWith("http://") || uri.startsWith("https://")) {
+            connection = (HttpURLConnection) new URL(uri).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(CONNECT_TIMEOUT);
+            in = connection.getInputStream();
+        } else {
+            in = new FileInputStream(uri);
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+}
@@ -1,25 +1,46 @@
 package com.third.com.bzq.pile;
 
-import android.animation.ObjectAnimator;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.OnLifecycleEvent;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Rect;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.support.animation.DynamicAnimation;
+import android.support.animation.FloatPropertyCompat;
+import android.support.animation.SpringAnimation;
+import android.support.animation.SpringForce;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v4.view.NestedScrollingChild2;
+import android.support.v4.view.NestedScrollingChildHelper;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 
 import com.common.tools.VLog;
-import com.common.tools.StringUtil;
 import com.demo.my.androiddemo.R;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 循环-轮播图
@@ -28,41 +49,81 @@ import java.util.List;
  * 时间：2023-09
  */
 
-public class PileLayout extends ViewGroup {
+public class PileLayout extends ViewGroup implements NestedScrollingChild2 {
 
     /*
     * 整体架构：
     *
-    * 总共使用4个FrameLayout：第一个在最左面（屏幕左侧，处于隐藏状态），第二个和第一个处于同一层（顶层），且在第一个右侧，同时也是主图。第三个和第四个依此在第二个的右侧，并且层级（Z轴）依此降低
-    * 手势左滑的时候，第一个放到FrameLayout队列最后面。手势右滑的时候，第四个放到FrameLayout队列的最上面。
-    *
-    * PS：针对右滑另一种实现思路是新增第二个层的辅助展示层，通过控制其展示状态，也可起到展示效果。可以避免目前通过层的来回移动，来实现中间态的展示效果。
+    * 总共使用visibleCount+1个FrameLayout（默认4个），组成一个卡槽环：环头在最左面（屏幕左侧，处于隐藏状态），下一个和环头处于同一层（顶层），且在环头右侧，同时也是主图。其余的依此在主图的右侧，并且层级（Z轴）依此降低
+    * 子View的顺序始终不变，每个卡槽所处的卡位由环头推算。手势左滑的时候，环头后移一位（隐藏位的卡槽转到最后面）。手势右滑的时候，环头前移一位（最后一个卡槽转到隐藏位）。
+    * 所有卡槽都布局在主图的位置，滑动过程中只累计滑动偏移量，由偏移量直接计算每个卡槽的位移、透明度与缩放。右滑时隐藏位上的图直接滑入。
+    * 卡槽环、偏移量、翻页判断与变换的计算都在PileEngine中（与View无关），这里只负责事件、绑定、动画，以及把变换结果渲染到子View上。
     *
     * */
 
     //全局常量
-    private static final int FOCUS_DISPLAY_COUNT = 3;//轮播图实际展示的个数
-    private static final int FIRST_FRAME_SHOW_INDEX = 1;//因为索引是0的是最左边，属于不展示状态，所以第一个展示的是索引是1的
+    private static final int DEFAULT_VISIBLE_COUNT = 3;//轮播图默认展示的个数
+    private static final int DEFAULT_MIN_FLING_VELOCITY = 400;//默认的惯性翻页最小速度：dp/秒
 
-    //全局变量
-    private boolean isRightScrolling = false;//是否向右滑动中
-    private boolean isForceLeftScroll = false;//是否强制左滑
-    private boolean isForceRightScroll = false;//是否强制右滑
+    //动画引擎（对应属性animationEngine）
+    private static final int ENGINE_SPRING = 0;//弹簧动画逐帧计算偏移量，时长由剩余距离与松手速度决定（默认）
+    private static final int ENGINE_VIEW_PROPERTY = 1;//ViewPropertyAnimator + 硬件层，一次提交目标值，定时翻页也带动画
 
     //属性参数
     private int imageInterval = 30; //图的间隔
     private float imageSizeRatio = 0.61f;//图的长宽比
     private int timerDelayTime = 5;//定时器延迟的时间：秒
+    private int visibleCount = DEFAULT_VISIBLE_COUNT;//轮播图实际展示的个数
+    private int imageStackOffset = 100;//后面的图依次错开的距离
+    private int animationEngine = ENGINE_SPRING;//动画引擎
+    private boolean hardwareLayerEnabled = true;//拖动与动画期间是否把卡槽提升为硬件层
+    private int prefetchCount = 2;//沿翻页方向预取的个数，0表示不预取
+    private float minFlingVelocity;//惯性翻页的最小速度：像素/秒，松手速度达到后按惯性翻页（可以一次翻多页）
 
     //布局与图片相关
-    private List<Integer> originX = new ArrayList<>(); //存放的是最初的n个View的位置
     private int everyWidth;
     private int everyHeight;
 
+    //布局缓存：宽度、左右边距、间隔、长宽比都不变时，不重新计算卡位的坐标，也不重新测量、摆放卡槽
+    private int cachedWidth = -1;
+    private int cachedPaddingLeft;
+    private int cachedPaddingRight;
+    private int cachedImageInterval;
+    private float cachedImageSizeRatio;
+    private boolean isSlotLayoutDirty = true;//卡片尺寸变化后，卡槽需要重新测量、摆放
+
     //定义适配器，监听事件
     private OnClickListener onClickListener;//点击监听
     private Adapter adapter;//适配器
     private boolean hasSetAdapter = false;//是否设置适配器
+    private int pendingCurrentItem = PileEngine.NO_INDEX;//绑定适配器之前设置的当前数据
+    private Class<?> holderAdapterClass;//卡槽上的ViewHolder所属的适配器类型：同类型的适配器重新绑定时直接复用
+    private int loadMoreCount = -1;//分页数据源：已通知加载更多时的数据个数，避免重复通知
+    private ViewTreeObserver.OnGlobalLayoutListener globalLayoutListener;//尺寸确定后绑定适配器，绑定后移除
+
+    //首帧装载：首帧只装载主图，其余卡槽在首帧之后装载
+    private boolean isAsyncInflateEnabled = false;//是否异步装载（只在首帧之后的装载中）
+    private boolean[] slotInflating;//卡槽是否正在异步装载
+    private AsyncLayoutInflater asyncLayoutInflater;
+    private Runnable deferredBind = new Runnable() {
+        @Override
+        public void run() {
+            if (adapter == null) {
+                return;
+            }
+
+            isAsyncInflateEnabled = true;
+            bindSlots(false);//未绑定的卡槽：可以按布局ID装载的在后台装载，其余的在这里直接创建
+            isAsyncInflateEnabled = false;
+        }
+    };
+
+    //卡槽环：卡槽即子View的下标，子View的顺序不变
+    private PileEngine engine;//卡槽环、滑动偏移量与变换
+    private int slotCount;//卡槽总数（含最左侧的隐藏位）
+    private ViewHolder[] slotHolders;//每个卡槽当前装载的ViewHolder
+    private SlotPool slotPool;//按类型回收的ViewHolder
+    private boolean isSlotPoolShared = false;//回收池是否与其他轮播图共用：共用时离开窗口把卡片还给回收池
 
     //拖拽相关
     private int scrollMode;
@@ -72,18 +133,88 @@ public class PileLayout extends ViewGroup {
     private float downX, downY;//手指按下时的XY的坐标
     private float lastX;//上一次的x坐标
     private int diff_X = 0;//水平滑动的距离
+    private VelocityTracker velocityTracker;//松手时的速度
+    private float maxFlingVelocity;//最大速度：像素/秒
+    private int touchSlop;//超过这个距离才判断滑动方向
+
+    //嵌套滑动：拖动前后把水平滑动的距离分发给支持嵌套滑动的父控件
+    private NestedScrollingChildHelper nestedScrollingHelper;
+    private final int[] nestedConsumed = new int[2];
+    private final int[] nestedOffset = new int[2];
+
+    //预取
+    private int prefetchDirection = 0;//预取方向：1向左翻页（取后面的数据），-1向右翻页（取前面的数据）
+    private int prefetchNext;//下一个要预取的轮播图索引
+    private int prefetchEnd;//预取到的轮播图索引（不含）
+    private boolean isPrefetchScheduled = false;//是否已注册空闲回调
+    private MessageQueue.IdleHandler prefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            //每次空闲只预取一个，避免占用太长的空闲时间
+            if (hasPrefetchWork()) {
+                int dataIndex = engine.getDataIndex(prefetchNext);
+                if (dataIndex != PileEngine.NO_INDEX) {//分页数据源尚未加载的跳过
+                    adapter.onPrefetch(dataIndex);
+                }
+                prefetchNext += prefetchDirection;
+            }
+
+            isPrefetchScheduled = hasPrefetchWork();
+            return isPrefetchScheduled;//返回false后自动移除
+        }
+    };
 
     //定时器
-    private boolean isOnTimer = true;//是否开启定时器
-    private static Handler handlerTimer = new Handler();//定时器
-    private static Runnable runnableTimer;//定时器-运行
+    private boolean isOnTimer = true;//是否开启定时器：所有实例共用PileTicker
     private boolean timerIsRuning = false;//定时器是否在运行中
+    private boolean isTimerScheduled = false;//是否已注册到PileTicker：不可见时挂起
+    private boolean isVisibleAggregated = true;//自身及父控件是否都可见
+    private boolean isWindowVisible = true;//窗口是否可见
+    private boolean isScreenOn = true;//屏幕是否点亮
+    private boolean isLifecyclePaused = false;//页面是否已暂停（设置了Lifecycle时）
+    private Lifecycle lifecycle;//页面的生命周期，可选
+    private TimerLifecycleObserver lifecycleObserver;
+    private Rect visibleRect = new Rect();//判断是否在屏幕内
+    private long suspendedTime = 0;//挂起的时间（uptimeMillis），用于统计挂起期间跳过的次数
+    private int timerTicksExecuted = 0;//统计：执行的定时翻页次数
+    private int timerTicksSkipped = 0;//统计：跳过的定时翻页次数（不可见、挂起）
 
     //动画
-    private ObjectAnimator animator;//动画对象
+    private SpringAnimation springAnimation;//弹簧动画：动画值即滑动偏移量，归位到0
+    private DynamicAnimation.OnAnimationEndListener springEndListener = new DynamicAnimation.OnAnimationEndListener() {
+        @Override
+        public void onAnimationEnd(DynamicAnimation animation, boolean canceled, float value, float velocity) {
+            setSlotsLayerPromoted(false);//动画结束（含取消），恢复普通绘制
+            endMetricsSession();
+        }
+    };
+    private static final FloatPropertyCompat<PileLayout> ANIMATE_VALUE = new FloatPropertyCompat<PileLayout>("animateValue") {
+        @Override
+        public float getValue(PileLayout layout) {
+            return layout.getAnimateValue();
+        }
+
+        @Override
+        public void setValue(PileLayout layout, float value) {
+            layout.setAnimateValue(value);
+        }
+    };
     private Interpolator interpolator = new DecelerateInterpolator(1.6f);//动画插值器：效果是开始速率比较快，后面减速
-    private FrameLayout animatingView;//动画层
-    private float animateValue;//动画值
+    private static final int ANIMATION_DURATION = 360;//翻一页的动画时长：毫秒
+    private static final int MIN_ANIMATION_DURATION = 120;//最短的动画时长：毫秒
+    private boolean isSlotsAnimating = false;//ViewPropertyAnimator动画中，布局时不覆盖变换
+    private Runnable slotsAnimationEnd = new Runnable() {
+        @Override
+        public void run() {
+            isSlotsAnimating = false;
+            setSlotsLayerPromoted(false);
+            endMetricsSession();
+        }
+    };
+    private boolean isLayerPromoted = false;//卡槽当前是否是硬件层
+
+    //性能统计（可选）
+    private PileMetricsRecorder metricsRecorder;//未设置Metrics时为null，热路径上只多一次判空
 
     //**************************************** 构造函数 ****************************************//
 
@@ -116,8 +247,23 @@ public class PileLayout extends ViewGroup {
         imageInterval = (int) a.getDimension(R.styleable.pile_imageInterval, imageInterval);
         imageSizeRatio = a.getFloat(R.styleable.pile_imageSizeRatio, imageSizeRatio);
         timerDelayTime = a.getInt(R.styleable.pile_timerDelayTime, timerDelayTime);
+        animationEngine = a.getInt(R.styleable.pile_animationEngine, animationEngine);
+        hardwareLayerEnabled = a.getBoolean(R.styleable.pile_hardwareLayerEnabled, hardwareLayerEnabled);
+        visibleCount = Math.max(1, a.getInt(R.styleable.pile_visibleCount, visibleCount));
+        imageStackOffset = (int) a.getDimension(R.styleable.pile_imageStackOffset, imageStackOffset);
+        prefetchCount = Math.max(0, a.getInt(R.styleable.pile_prefetchCount, prefetchCount));
+        minFlingVelocity = a.getDimension(R.styleable.pile_minFlingVelocity, DEFAULT_MIN_FLING_VELOCITY * getResources().getDisplayMetrics().density);
         a.recycle();
 
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        touchSlop = configuration.getScaledTouchSlop();
+
+        nestedScrollingHelper = new NestedScrollingChildHelper(this);
+        setNestedScrollingEnabled(true);
+
+        initSlotStates();
+
         if (timerDelayTime <= 0) {
             isOnTimer = false;//关闭定时器
         }
@@ -132,12 +278,14 @@ public class PileLayout extends ViewGroup {
             public void onClick(View v) {
                 if (adapter != null) {
 
-                    int position = StringUtil.str2Int(v.getTag().toString());
-                    int dataIndex = getDataIndex(position);//取得数据库对应的索引
-                    VLog.d("点击的索引数据", "轮播图索引：" + StringUtil.intToStr(position) + "，数据库索引：" + StringUtil.intToStr(dataIndex));
+                    int slot = indexOfChild(v);
+                    int position = engine.getSlotPosition(slot);
+                    int dataIndex = engine.getBoundDataIndex(slot);//取得数据库对应的索引
+                    VLog.v("点击的索引数据", "轮播图索引：%d，数据库索引：%d", position, dataIndex);
 
-                    if (dataIndex >= 0) {
-                        adapter.onItemClick(((FrameLayout) v).getChildAt(0), dataIndex);
+                    ViewHolder holder = slotHolders[slot];
+                    if (dataIndex >= 0 && holder != null && !adapter.isPlaceholder(dataIndex)) {//占位卡片不响应点击
+                        adapter.onItemClick(holder.itemView, dataIndex);
                     }
                 }
             }
@@ -148,585 +296,1393 @@ public class PileLayout extends ViewGroup {
     //初始化适配器
     private void initAdapter() {
 
-        getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+        globalLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
             @Override
             public void onGlobalLayout() {
                 if (getHeight() > 0 && adapter != null && !hasSetAdapter) {
                     setAdapter(adapter);
                 }
             }
-        });
+        };
+        getViewTreeObserver().addOnGlobalLayoutListener(globalLayoutListener);
+
+    }
 
+    //初始化卡槽环
+    private void initSlotStates() {
+        engine = new PileEngine(visibleCount);
+        slotCount = engine.getSlotCount();
+        slotHolders = new ViewHolder[slotCount];
+        slotInflating = new boolean[slotCount];
+        slotPool = new SlotPool(slotCount);
     }
 
-    //测量视图，进行前期计算
+    //测量视图，进行前期计算：只在布局缓存失效时（如旋转屏幕、修改边距）重新计算
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);//屏幕宽度
-        everyWidth = (width - getPaddingLeft() - getPaddingRight() - imageInterval * FOCUS_DISPLAY_COUNT);//图的宽
-        everyHeight = (int) (everyWidth * imageSizeRatio);//图的高
-        setMeasuredDimension(width, everyHeight);
-
-        //把每个View的初始位置坐标都计算好（不参与实际绘制）
-        if (originX.size() == 0) {
-
-            //1最左边的（隐藏）
-            int position0 = 0 - everyWidth - imageInterval;
-            originX.add(position0);
-
-            //2主图
-            int position1 = 0;
-            originX.add(position1);
-
-            //3第二个显示图
-            int position2 = position1 + imageInterval + 100;
-            originX.add(position2);
+        int paddingLeft = getPaddingLeft();
+        int paddingRight = getPaddingRight();
+
+        if (width != cachedWidth || paddingLeft != cachedPaddingLeft || paddingRight != cachedPaddingRight
+                || imageInterval != cachedImageInterval || imageSizeRatio != cachedImageSizeRatio) {
+            cachedWidth = width;
+            cachedPaddingLeft = paddingLeft;
+            cachedPaddingRight = paddingRight;
+            cachedImageInterval = imageInterval;
+            cachedImageSizeRatio = imageSizeRatio;
+
+            int oldWidth = everyWidth;
+            int oldHeight = everyHeight;
+            everyWidth = Math.max(0, width - paddingLeft - paddingRight - imageInterval * visibleCount);//图的宽：宽度不够（如未指定宽度）时为0
+            everyHeight = (int) (everyWidth * imageSizeRatio);//图的高
+
+            //翻一页的距离，以及后面的图依次错开的距离（不参与实际绘制）
+            engine.setGeometry(everyWidth + imageInterval, imageInterval + imageStackOffset);
+
+            if (everyWidth != oldWidth || everyHeight != oldHeight) {
+                isSlotLayoutDirty = true;
+            }
+        }
 
-            //4第三个显示图
-            int position3 = position2 + imageInterval + 100;
-            originX.add(position3);
+        setMeasuredDimension(width, everyHeight);
 
+        //卡槽都是卡片的大小：尺寸变化或者卡槽自己请求了布局时才测量
+        int widthSpec = MeasureSpec.makeMeasureSpec(everyWidth, MeasureSpec.EXACTLY);
+        int heightSpec = MeasureSpec.makeMeasureSpec(everyHeight, MeasureSpec.EXACTLY);
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            View child = getChildAt(i);
+            if (isSlotLayoutDirty || child.isLayoutRequested()) {
+                child.measure(widthSpec, heightSpec);
+            }
         }
     }
 
-    //绘制布局
+    //绘制布局：所有卡槽都放在主图的位置，所处卡位的差异由translationX表示。
+    //翻页时卡槽的位置不变，只更新变换，所以这里只在尺寸变化后重新摆放、重新计算变换
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        long startNanos = metricsRecorder != null ? System.nanoTime() : 0;
 
-        if (isRightScrolling) {//当前正在滑动中，无需处理
-            return;
-        }
+        refreshItemCount();//每次布局缓存一次数据个数
 
         int num = getChildCount();
+        int top = (getMeasuredHeight() - everyHeight) / 2;
 
         for (int i = 0; i < num; i++) {
-            View itemView = getChildAt(i);
-            int left = originX.get(i);
-            int top = (getMeasuredHeight() - everyHeight) / 2;
-            int right = left + everyWidth;
-            int bottom = top + everyHeight;
-
-            itemView.layout(left, top, right, bottom);
+            View child = getChildAt(i);
+            if (changed || isSlotLayoutDirty || child.isLayoutRequested()) {
+                child.layout(0, top, everyWidth, top + everyHeight);
+            }
+        }
 
-            if (i == 0 || i == 1) {//前2个在同一层
-                itemView.setZ(num - 1);//恒定是3
-            } else {
-                itemView.setZ(num - i);//2,1,0...
+        if (isSlotLayoutDirty && num > 0) {
+            isSlotLayoutDirty = false;
+            if (!isSlotsAnimating) {
+                applySlotTransforms();//翻一页的距离变了，按新的卡位坐标变换
             }
+        }
 
-            adjustScaleAndAlpha(itemView, i, 0);
+        if (metricsRecorder != null) {
+            metricsRecorder.addSection(PileMetricsRecorder.SECTION_LAYOUT, System.nanoTime() - startNanos);
         }
     }
 
-    //透明度与缩放
-    private void adjustScaleAndAlpha(View itemView, int position, int diffX) {
-        if (isRightScrolling) { //****** 处于向右滑动中 ******//
+    //卡片的宽度（测量后才有值）
+    public int getItemWidth() {
+        return everyWidth;
+    }
 
-            if (position == 2) {
-                //透明度
-                float offsetAlpha = (float) diffX / 4000;
-                itemView.setAlpha(itemView.getAlpha() - offsetAlpha);
-                //缩放
-                float offsetScale = (float) diffX / 8000;
-                itemView.setScaleX(itemView.getScaleX() - offsetScale);
-                itemView.setScaleY(itemView.getScaleY() - offsetScale);
+    //卡片的高度（测量后才有值）
+    public int getItemHeight() {
+        return everyHeight;
+    }
 
-            } else if (position == 3) {
-                //透明度
-                float offsetAlpha = (float) diffX / 2000;
-                itemView.setAlpha(itemView.getAlpha() - offsetAlpha);
-                //缩放
-                float offsetScale = (float) diffX / 10000;
-                itemView.setScaleX(itemView.getScaleX() - offsetScale);
-                itemView.setScaleY(itemView.getScaleY() - offsetScale);
-            } else {
-                //透明度
-                itemView.setAlpha(1f);
-                //缩放
-                itemView.setScaleX(1f);
-                itemView.setScaleY(1f);
-            }
-
-        } else if (diffX == 0) { //****** 静止状态,默认状态 ******//
-
-            if (position == 2) {
-                //透明度
-                itemView.setAlpha(0.8f);
-                //缩放
-                itemView.setScaleX(0.85f);
-                itemView.setScaleY(0.85f);
-            } else if (position == 3) {
-                //透明度
-                itemView.setAlpha(0.4f);
-                //缩放
-                itemView.setScaleX(0.7f);
-                itemView.setScaleY(0.7f);
-            } else {
-                //透明度
-                itemView.setAlpha(1f);
-                //缩放
-                itemView.setScaleX(1f);
-                itemView.setScaleY(1f);
-            }
-
-        } else { //****** 处于左滑状态 ******//
-
-            if (position == 2) {
-                //透明度
-                float offsetAlpha = (float) diffX / 2000;//计算滑动变化的数值
-                itemView.setAlpha(itemView.getAlpha() - offsetAlpha);
-                //缩放
-                float offsetScale = (float) diffX / 10000;//计算滑动变化的数值
-                itemView.setScaleX(itemView.getScaleX() - offsetScale);
-                itemView.setScaleY(itemView.getScaleY() - offsetScale);
-            } else if (position == 3) {
-                //透明度
-                float offsetAlpha = (float) diffX / 4000;//计算滑动变化的数值
-                itemView.setAlpha(itemView.getAlpha() - offsetAlpha);
-                //缩放
-                float offsetScale = (float) diffX / 12000;//计算滑动变化的数值
-                itemView.setScaleX(itemView.getScaleX() - offsetScale);
-                itemView.setScaleY(itemView.getScaleY() - offsetScale);
-            } else {
-                //透明度
-                itemView.setAlpha(1f);
-                //缩放
-                itemView.setScaleX(1f);
-                itemView.setScaleY(1f);
-            }
+    //卡槽总数（含最左侧的隐藏位）
+    public int getSlotCount() {
+        return slotCount;
+    }
 
+    //根据当前滑动进度，对所有卡槽进行变换
+    private void applySlotTransforms() {
+        engine.computeTransforms();
+
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            adjustScaleAndAlpha(getChildAt(i), i);
         }
     }
 
+    //把引擎计算好的位移、透明度、缩放与层级设置到卡槽上
+    private void adjustScaleAndAlpha(View itemView, int slot) {
+        itemView.setTranslationX(engine.getTranslationX(slot));
+        itemView.setAlpha(engine.getAlpha(slot));
+
+        float scale = engine.getScale(slot);
+        itemView.setScaleX(scale);
+        itemView.setScaleY(scale);
+
+        itemView.setZ(engine.getZ(slot));
+    }
+
     //**************************************** 适配器与数据 ****************************************//
 
     //设置Adapter
     public void setAdapter(Adapter adapter) {
+        if (this.adapter != null && this.adapter.observer == this) {
+            this.adapter.observer = null;
+        }
+
         this.adapter = adapter;
+        if (adapter != null) {
+            adapter.observer = this;
+        }
 
         if (everyWidth > 0 && everyHeight > 0) {//视图渲染后，才能做适配
             doBindAdapter();
         }
     }
 
-    //绑定Adapter：对视图进行装载
-    private void doBindAdapter() {
+    //绑定数据（列表中复用的轮播图）：复用已有的卡槽与卡片，从savedPosition（unbind前getCurrentItem()的值，没有时传-1）开始展示
+    public void bind(Adapter adapter, int savedPosition) {
+        unbind();
         if (adapter == null) {
             return;
         }
 
-        hasSetAdapter = true;
-
-        //初始化
-        if (getChildCount() == 0) {
-            LayoutInflater inflater = LayoutInflater.from(getContext());
-
-            int focus_display_all_count = FOCUS_DISPLAY_COUNT + 1;//轮播图全部展示的个数（含最左侧的隐藏位）
-
-            for (int i = 0; i < focus_display_all_count; i++) {
-                FrameLayout frameLayout = new FrameLayout(getContext());
-                View view = inflater.inflate(adapter.getLayoutId(), null);
-
-                FrameLayout.LayoutParams lp1 = new FrameLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
-                lp1.width = everyWidth;
-                lp1.height = everyHeight;
-                frameLayout.addView(view, lp1);
+        engine.reset();//卡槽全部失效，绑定时重新绑定
+        pendingCurrentItem = savedPosition >= 0 ? savedPosition : PileEngine.NO_INDEX;
+        setAdapter(adapter);
+    }
 
-                LayoutParams lp2 = new LayoutParams(everyWidth, everyHeight);
-                lp2.width = everyWidth;
-                lp2.height = everyHeight;
-                frameLayout.setLayoutParams(lp2);
-                frameLayout.setOnClickListener(onClickListener);
+    //解除绑定（列表中的轮播图被回收）：只重置动画、手势、定时器与预取等状态，卡槽与卡片保留给下一次bind
+    public void unbind() {
+        if (adapter == null) {
+            return;
+        }
 
-                addView(frameLayout);
+        cancelAnimation();
+        resetTouchState();
+        removeCallbacks(deferredBind);
+        if (isPrefetchScheduled) {
+            isPrefetchScheduled = false;
+            Looper.myQueue().removeIdleHandler(prefetchIdleHandler);
+        }
+        prefetchDirection = 0;
 
-                frameLayout.setTag(i - FIRST_FRAME_SHOW_INDEX); //对应于在dataList中的数据index。这样可以和数据集索引匹配
-                frameLayout.measure(everyWidth, everyHeight);
-            }
+        if (adapter.observer == this) {
+            adapter.observer = null;
         }
+        adapter = null;
+        hasSetAdapter = false;
+        pendingCurrentItem = PileEngine.NO_INDEX;
+        loadMoreCount = -1;
+
+        engine.reset();
+        engine.setItemCount(0);//定时器随之挂起
+        suspendedTime = 0;//不同数据之间不统计跳过的次数
+        updateTimerSchedule();
+
+        setSlotsLayerPromoted(false);
+        applySlotTransforms();
+    }
 
-        //绑定视图:绑定数据，或者其他操作（显示，隐藏等）
+    //清空所有卡槽上的ViewHolder，不放入回收池；自己的回收池也一起清空（共用的回收池由使用者管理）
+    private void clearSlotHolders() {
         int num = getChildCount();
         for (int i = 0; i < num; i++) {
-            if (i == 0) {//第一个是隐藏状态，无需处理
-                continue;
+            ViewHolder holder = slotHolders[i];
+            if (holder != null) {
+                ((SlotView) getChildAt(i)).detachCard(holder.itemView);
+                slotHolders[i] = null;
             }
-
-            FrameLayout frameLayout = (FrameLayout) getChildAt(i);
-
-            int curPoistion = StringUtil.str2Int(frameLayout.getTag().toString());
-            int dataIndex = getDataIndex(curPoistion);
-
-            adapter.bindView(frameLayout.getChildAt(0), dataIndex);//绑定视图
+            engine.setBoundDataIndex(i, PileEngine.NO_INDEX);
         }
 
-        if (adapter.getItemCount() > 0) {
-            adapter.displaying(0);
+        if (!isSlotPoolShared) {
+            slotPool = new SlotPool(slotCount);
         }
     }
 
-    //数据更新通知
-    public void notifyDataSetChanged() {
-        int num = getChildCount();
+    //设置回收池：多个使用相同适配器（卡片类型）的轮播图可以共用一个，离开窗口的轮播图把卡片还给回收池，
+    //添加到窗口的再从中取出，限制卡片的总数。传null恢复为自己的回收池。只在主线程使用
+    public void setSlotPool(SlotPool pool) {
+        if (pool == slotPool) {
+            return;
+        }
 
-        for (int i = 0; i < num; i++) {
-            FrameLayout frameLayout = (FrameLayout) getChildAt(i);
+        recycleSlotHolders();//当前的卡片还给原来的回收池
+        isSlotPoolShared = pool != null;
+        slotPool = pool != null ? pool : new SlotPool(slotCount);
+        bindSlots(false);
+    }
 
-            int position = StringUtil.str2Int(frameLayout.getTag().toString());
-            int dataIndex = getDataIndex(position);//取得数据库对应的索引
-            VLog.d("绑定的索引数据", "轮播图索引：" + StringUtil.intToStr(position) + "，数据库索引：" + StringUtil.intToStr(dataIndex));
+    public SlotPool getSlotPool() {
+        return slotPool;
+    }
 
-            adapter.bindView(frameLayout.getChildAt(0), dataIndex);//绑定视图
+    //把所有卡槽上的卡片放入回收池，卡槽全部失效，下次绑定时再从回收池取出
+    private void recycleSlotHolders() {
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            clearSlot(i);
         }
     }
 
-    //通过positon转换为数据表对应的索引
-    private int getDataIndex(int position) {
+    //绑定Adapter：对视图进行装载
+    private void doBindAdapter() {
+        if (adapter == null) {
+            return;
+        }
 
-        if (position >= 0) {//正数
-            if (position < adapter.getItemCount()) {//个数小于数据集
-                return position;
-            } else {
-                return position % adapter.getItemCount();//超过索引，寻找下一轮的索引(求余数)
-            }
-        } else {//负数
-            int positionNew = Math.abs(position);//提取绝对值
+        hasSetAdapter = true;
 
-            if (positionNew < adapter.getItemCount()) {
-                return adapter.getItemCount() - positionNew;//因为本身是负数，所以需要倒着查找
-            } else {//负数且超过索引，寻找下一轮的索引(求余数)
-                int nextIndx = positionNew % adapter.getItemCount();
-                return adapter.getItemCount() - 1 - nextIndx;//负数需要相减
-            }
+        if (holderAdapterClass != null && holderAdapterClass != adapter.getClass()) {//不同的适配器，ViewHolder不能通用
+            clearSlotHolders();
         }
+        holderAdapterClass = adapter.getClass();
 
-    }
+        if (globalLayoutListener != null) {//已绑定，不再需要监听每次全局布局
+            getViewTreeObserver().removeOnGlobalLayoutListener(globalLayoutListener);
+            globalLayoutListener = null;
+        }
 
-    //适配器的抽象类
-    public static abstract class Adapter {
+        //初始化
+        boolean isFirstBind = getChildCount() == 0;
+        if (isFirstBind) {
+            engine.reset();
 
-        //Layout的ID
-        public abstract int getLayoutId();
+            for (int i = 0; i < slotCount; i++) {
+                FrameLayout frameLayout = new SlotView(getContext());//卡片在绑定时按类型装载
 
-        //Item数量
-        public abstract int getItemCount();
+                frameLayout.setOnClickListener(onClickListener);
 
-        //绑定视图
-        public void bindView(View view, int index) {
+                addView(frameLayout, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));//尺寸在onMeasure中按卡片大小指定
+            }
         }
 
-        //点击事件
-        public void onItemClick(View view, int position) {
-        }
+        refreshItemCount();
 
-        //显示中
-        public void displaying(int position) {
+        if (pendingCurrentItem != PileEngine.NO_INDEX) {//绑定前设置了当前数据，直接跳转，不做动画
+            engine.jumpBy(pendingCurrentItem - engine.getCurrentPosition());
+            engine.setScrollOffset(0);
+            pendingCurrentItem = PileEngine.NO_INDEX;
         }
 
-    }
+        //绑定视图:绑定数据，或者其他操作（显示，隐藏等）。隐藏位也需要绑定，右滑时直接滑入
+        if (isFirstBind) {
+            //首帧只装载、绑定主图，其余卡槽在首帧之后装载，不占用首帧的时间
+            int mainSlot = engine.getRingSlot(PileEngine.FIRST_FRAME_SHOW_INDEX);
+            bindSlot(mainSlot, engine.getTargetDataIndex(mainSlot));
+            post(deferredBind);
+        } else {
+            bindSlots(true);
+        }
 
-    //**************************************** 点击事件 ****************************************//
+        int currentItem = getCurrentItem();
+        if (currentItem != PileEngine.NO_INDEX) {
+            adapter.displaying(currentItem);
+        }
 
-    //用于进行点击事件的拦截
-    @Override
-    public boolean onInterceptTouchEvent(MotionEvent event) {
+        applySlotTransforms();//布局只在尺寸变化时才更新变换，绑定后直接摆好
 
-        int action = event.getActionMasked();
-        switch (action) {
-            case MotionEvent.ACTION_DOWN:
+        schedulePrefetch(PileEngine.PAGE_LEFT);//定时器向左翻页
+        checkLoadMore();
+    }
 
-                setParentScrollAble(false);
-                stopTimer();
+    //缓存数据个数：绑定、数据更新通知与每次布局时查询一次，翻页与绑定时不再查询。数据个数变化后重新判断是否需要定时器
+    private void refreshItemCount() {
+        if (adapter == null) {
+            return;
+        }
 
-                scrollMode = MODE_IDLE;//空闲模式
-                isRightScrolling = false;
+        boolean looping = !adapter.isPaged();
+        if (engine.isLooping() && !looping && getChildCount() > 0) {//由循环变为分页（如重新加载）：循环时的轮播图索引不能直接作为数据库索引，从第一个开始
+            engine.reset();
+            applySlotTransforms();
+        }
 
-                downX = (int) event.getX();
-                downY = (int) event.getY();
-                lastX = event.getX();
+        engine.setLooping(looping);
+        engine.setItemCount(adapter.getItemCount());
+        updateTimerSchedule();
+    }
 
-                if (null != animator) {
-                    animator.cancel();
-                }
-                animatingView = null;
+    //分页数据源：已加载的数据快要用完时（卡槽环与预取的范围超出了已加载的个数），通知加载更多。每个数据个数只通知一次
+    private void checkLoadMore() {
+        if (adapter == null || !adapter.isPaged()) {
+            return;
+        }
 
-                break;
-            case MotionEvent.ACTION_MOVE:
-                if (scrollMode == MODE_IDLE) {
-                    float xDistance = Math.abs(downX - event.getX());
-                    float yDistance = Math.abs(downY - event.getY());
-
-                    if (xDistance > yDistance) {//x的绝对值大于y，认定为水平滑动
-                        scrollMode = MODE_HORIZONTAL;//水平滑动，需要拦截，不会再触发其他事件。拦截后走下面的onTouchEvent对应的方法
-                        return true;
-                    } else if (yDistance > xDistance) {
-                        scrollMode = MODE_VERTICAL;//垂直滑动
-                        setParentScrollAble(true);
-                    }
-                }
+        int itemCount = engine.getItemCount();
+        if (itemCount != loadMoreCount && engine.getOutsidePosition(PileEngine.PAGE_LEFT) + prefetchCount >= itemCount) {
+            loadMoreCount = itemCount;
+            adapter.onLoadMore(itemCount);
+        }
+    }
 
-                break;
-            case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_CANCEL:
+    //当前（主图）的数据库索引，没有数据时为NO_INDEX
+    public int getCurrentItem() {
+        if (adapter == null || getChildCount() == 0) {
+            return pendingCurrentItem != PileEngine.NO_INDEX ? pendingCurrentItem : 0;
+        }
+        return engine.getTargetDataIndex(engine.getRingSlot(PileEngine.FIRST_FRAME_SHOW_INDEX));
+    }
 
-                setParentScrollAble(true);// 当手指松开时，让父控件重新获取onTouch权限
-                startTimer();
+    //跳转到指定的数据：直接计算每个卡槽的目标索引，只绑定数据变化的卡槽，动画只做一次过渡（与跳转的距离无关）
+    public void setCurrentItem(int dataIndex, boolean animate) {
+        if (adapter == null || dataIndex < 0) {
+            return;
+        }
 
-                //ACTION_UP还能拦截（如果是水平滑动，抬起后不会走到这里），说明：
-                //1.手指【没有水平】滑动
-                //2.是一个click事件
+        if (getChildCount() == 0) {//尚未绑定，绑定时再跳转
+            pendingCurrentItem = dataIndex;
+            return;
+        }
 
-                break;
+        if (dataIndex >= engine.getItemCount()) {
+            return;
         }
 
-        return false;//默认不拦截的。不会走下面的onTouchEvent对应的方法
+        //循环时在当前的轮播图索引上加上数据的差值；分页数据源不循环，轮播图索引即数据库索引
+        scrollByPages(dataIndex - getCurrentItem(), animate);
     }
 
-    //设置父控件是否可以获取到触摸处理权限
-    private void setParentScrollAble(boolean flag) {
-        //请求不要拦截
-        getParent().requestDisallowInterceptTouchEvent(!flag);
+    //翻pages页（正数向左翻页，显示后面的数据），带动画
+    public void smoothScrollBy(int pages) {
+        scrollByPages(pages, true);
     }
 
-    @Override
-    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
-        super.requestDisallowInterceptTouchEvent(disallowIntercept);
-    }
+    //翻pages页：跳转后只绑定一次，然后归位
+    private void scrollByPages(int pages, boolean animate) {
+        if (adapter == null || getChildCount() == 0 || pages == 0) {
+            return;
+        }
 
-    //用于处理点击事件
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
+        cancelAnimation();
+        long startNanos = beginMetricsSession(MetricsSnapshot.TYPE_TRANSITION);
 
-        int action = event.getActionMasked();
+        engine.jumpBy(pages);
+        if (metricsRecorder != null) {
+            metricsRecorder.onReorder();
+        }
 
-        switch (action) {
-            case MotionEvent.ACTION_DOWN:
-                break;
-            case MotionEvent.ACTION_MOVE:
-                int currentX = (int) event.getX();
-                diff_X = (int) (currentX - lastX);
+        bindSlots(false);//只绑定数据变化的卡槽
+        schedulePrefetch(pages > 0 ? PileEngine.PAGE_LEFT : PileEngine.PAGE_RIGHT);
+        checkLoadMore();
 
-                handleScrollChangeIng(diff_X);//手指拖动过程中的处理
+        settleToRest(0, animate);
 
-                lastX = currentX;
+        if (isTimerScheduled) {//手动翻页后重新计时
+            PileTicker.getInstance().schedule(this, getTimerInterval());
+        }
 
-                break;
-            case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_CANCEL:
+        if (metricsRecorder != null) {
+            metricsRecorder.addSection(PileMetricsRecorder.SECTION_SCROLL_END, System.nanoTime() - startNanos);
+            endMetricsSessionIfIdle();
+        }
+    }
 
-                if (isRightScrolling) {//处理最终状态前，先复位
-                    isRightScrolling = false;
-                    recoverRightScrollStatus();
-                }
+    //数据更新通知：全部卡槽重新绑定
+    public void notifyDataSetChanged() {
+        refreshItemCount();
+        bindSlots(true);
+        checkLoadMore();
+    }
 
-                handleScrollChangeEnd();//处理滚动后的最终逻辑
+    //插入数据通知：分页数据源只绑定新出现数据的卡槽，以及插入位置之后的卡槽；循环的数据全部重新绑定（索引都会变化）
+    public void notifyItemRangeInserted(int start, int count) {
+        notifyItemCountChanged(start);
+    }
 
-                startTimer();//开启定时器
+    //删除数据通知：分页数据源只清空超出范围的卡槽，并重新绑定删除位置之后的卡槽；循环的数据全部重新绑定
+    public void notifyItemRangeRemoved(int start, int count) {
+        notifyItemCountChanged(start);
+    }
 
-                break;
+    //数据个数变化：start之后的索引都发生了变化
+    private void notifyItemCountChanged(int start) {
+        if (adapter == null) {
+            return;
         }
 
-        return true;
+        if (!adapter.isPaged()) {
+            notifyDataSetChanged();
+            return;
+        }
+
+        refreshItemCount();
+
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            if (engine.isSlotStale(i) || engine.getBoundDataIndex(i) >= start) {
+                bindSlot(i, engine.getTargetDataIndex(i));
+            }
+        }
+        checkLoadMore();
     }
 
-    //**************************************** 滑动事件 ****************************************//
+    //单条数据更新通知：只重新绑定展示这条数据的卡槽
+    public void notifyItemChanged(int index) {
+        notifyItemRangeChanged(index, 1);
+    }
 
-    //手指拖动过程中的处理
-    private void handleScrollChangeIng(int diffX) {
-        if (diffX == 0) {
+    //多条数据更新通知：只重新绑定展示这些数据的卡槽
+    public void notifyItemRangeChanged(int start, int count) {
+        if (adapter == null) {
             return;
         }
 
         int num = getChildCount();
-
-        if (diffX > 0 && getChildAt(1).getLeft() >= 0) {//向右的滑动，先执行此逻辑，然后走下面的整体移动
-
-            if (!isRightScrolling) {
-
-                isRightScrolling = true;
-
-                //取得当前第一个的索引值
-                int curFirstIndex = StringUtil.str2Int(getChildAt(0).getTag().toString());
-
-                //向右滑动，从左边把View补上
-                FrameLayout lastView = (FrameLayout) getChildAt(FOCUS_DISPLAY_COUNT);
-                LayoutParams lp = lastView.getLayoutParams();
-                removeViewInLayout(lastView);
-                lastView.setTag(curFirstIndex - 1);//设置position值
-                addViewInLayout(lastView, 0, lp);
-
-                notifyDataSetChanged();//更新适配器
-
-                //位置调整
-                for (int i = 0; i < num; i++) {
-                    FrameLayout rowView = (FrameLayout) getChildAt(i);
-                    if (i == 0 || i == 1) {
-                        int newLeftX = originX.get(i) - everyWidth - imageInterval;
-                        rowView.setLeft(newLeftX);
-                        rowView.setRight(newLeftX + everyWidth);
-                        rowView.setZ(num - 1);
-                    } else if (i == 2) {//解决因为右滑产生图片右移过大的问题，直接以主图位置为基准
-                        int newLeftX1 = originX.get(1) + imageInterval;
-                        rowView.setLeft(newLeftX1);
-                        rowView.setRight(newLeftX1 + everyWidth);
-                        rowView.setZ(num - i);
-                    } else {
-                        int newLeftX1 = originX.get(i);
-                        rowView.setLeft(newLeftX1);
-                        rowView.setRight(newLeftX1 + everyWidth);
-                        rowView.setZ(num - i);
-                    }
-                }
+        for (int i = 0; i < num; i++) {
+            int dataIndex = engine.getBoundDataIndex(i);
+            if (dataIndex >= start && dataIndex < start + count) {
+                bindSlot(i, dataIndex);
             }
         }
+    }
 
-        //整体移动：支持左右滑动
-        for (int i = 0; i < num; i++) {
-            View itemView = getChildAt(i);
+    //绑定卡槽：force为false时，只绑定数据库索引发生变化的卡槽（翻一页只有一个卡槽变化）
+    private void bindSlots(boolean force) {
+        if (adapter == null) {
+            return;
+        }
 
-            if (i == 0 || i == 1) {//主图
-                itemView.offsetLeftAndRight(diffX);
-            } else {
-                itemView.offsetLeftAndRight(diffX / 7);
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            if (force || engine.isSlotStale(i)) {
+                bindSlot(i, engine.getTargetDataIndex(i));//取得数据库对应的索引
             }
-
-            adjustScaleAndAlpha(itemView, i, diffX);
         }
     }
 
-    //恢复右滑产生的数据变化
-    private void recoverRightScrollStatus() {
+    //绑定单个卡槽：dataIndex为NO_INDEX时清空
+    private void bindSlot(int slot, int dataIndex) {
+        if (dataIndex == PileEngine.NO_INDEX) {
+            clearSlot(slot);
+            return;
+        }
+
+        long startNanos = metricsRecorder != null ? System.nanoTime() : 0;
+
+        VLog.v("绑定的索引数据", "轮播图索引：%d，数据库索引：%d", engine.getSlotPosition(slot), dataIndex);//默认级别不输出，不拼接字符串
 
-        //恢复之前，先判断滑动距离
-        FrameLayout firstView = (FrameLayout) getChildAt(0);
+        ViewHolder holder = obtainViewHolder(slot, adapter.getItemViewType(dataIndex), adapter.isPlaceholder(dataIndex));
+        if (holder == null) {//异步装载中，装载完成后再绑定
+            return;
+        }
 
-        //取得当前最后一个的索引值
-        int curLastIndex = StringUtil.str2Int(getChildAt(FOCUS_DISPLAY_COUNT).getTag().toString());
+        engine.setBoundDataIndex(slot, dataIndex);
+        adapter.onBindViewHolder(holder, dataIndex);//绑定视图
 
-        //向左滑动，从右边把View补上
-        LayoutParams lp = firstView.getLayoutParams();
-        removeViewInLayout(firstView);
-        firstView.setTag(curLastIndex + 1);//添加后，索引增1
-        addViewInLayout(firstView, -1, lp);
+        if (metricsRecorder != null) {
+            metricsRecorder.addSection(PileMetricsRecorder.SECTION_BIND, System.nanoTime() - startNanos);
+            metricsRecorder.onBind();
+        }
     }
 
-    //手指松开后的处理
-    private void handleScrollChangeEnd() {
+    //清空卡槽：没有对应的数据（数据为空、只有一个数据时主图以外的卡槽、分页数据源的范围之外），卡片回收到回收池
+    private void clearSlot(int slot) {
+        engine.setBoundDataIndex(slot, PileEngine.NO_INDEX);
 
-        FrameLayout firstView = (FrameLayout) getChildAt(0);//第一个图
-        FrameLayout curView = (FrameLayout) getChildAt(1);//主图
-        FrameLayout lastView = (FrameLayout) getChildAt(FOCUS_DISPLAY_COUNT);
+        ViewHolder holder = slotHolders[slot];
+        if (holder != null) {
+            ((SlotView) getChildAt(slot)).detachCard(holder.itemView);
+            slotPool.put(holder);
+            slotHolders[slot] = null;
+        }
+    }
 
-        boolean isRightScroll = false;
-        boolean isLeftScroll = false;
+    //异步装载：首帧之后的装载中，适配器通过getItemLayoutId()开启了后台装载的类型（占位卡片除外）在后台装载，装载完成后放入回收池，再绑定卡槽
+    private boolean inflateAsync(final int slot, final int viewType, boolean isPlaceholder) {
+        if (!isAsyncInflateEnabled || isPlaceholder) {
+            return false;
+        }
 
-        //判断是否最终向右滑动还是向左移动
-        if (isForceRightScroll) {
-            isRightScroll = true;//强制就直接指定
-        } else if (isForceLeftScroll) {
-            isLeftScroll = true;//强制就直接指定
-        } else {
-            if (firstView.getRight() > (firstView.getWidth() / 2)) {//偏移量超过图片的一半
-                isRightScroll = true;
-            } else if (Math.abs(curView.getLeft()) > (firstView.getWidth() / 2)) {
-                isLeftScroll = true;
-            }
+        int layoutId = adapter.getItemLayoutId(viewType);
+        if (layoutId == 0) {
+            return false;
         }
 
-        //********** 滑动 **********//
-        if (isRightScroll) {//向右的滑动
+        if (asyncLayoutInflater == null) {
+            asyncLayoutInflater = new AsyncLayoutInflater(getContext());
+        }
 
-            //取得当前第一个的索引值
-            int curFirstIndex = StringUtil.str2Int(getChildAt(0).getTag().toString());
+        final Adapter requestAdapter = adapter;
+        slotInflating[slot] = true;
+        asyncLayoutInflater.inflate(layoutId, (ViewGroup) getChildAt(slot), new AsyncLayoutInflater.OnInflateFinishedListener() {
+            @Override
+            public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                slotInflating[slot] = false;
+                if (adapter != requestAdapter) {//期间更换了适配器
+                    return;
+                }
 
-            //向右滑动，从左边把View补上
-            LayoutParams lp = lastView.getLayoutParams();
-            removeViewInLayout(lastView);
-            lastView.setTag(curFirstIndex - 1);//添加后，索引减1
-            addViewInLayout(lastView, 0, lp);
+                ViewHolder holder = adapter.createViewHolder(view, viewType);
+                holder.itemViewType = viewType;
+                slotPool.put(holder);
 
-            notifyDataSetChanged();//更新适配器
+                if (engine.isSlotStale(slot)) {
+                    bindSlot(slot, engine.getTargetDataIndex(slot));
+                }
+            }
+        });
+        return true;
+    }
 
-        } else if (isLeftScroll) {//向左的滑动：偏移量超过图片的一半
+    //取得卡槽上指定类型的ViewHolder：类型不变直接复用，否则把旧的回收，再从回收池取出或者新建。
+    //正在异步装载的返回null
+    private ViewHolder obtainViewHolder(int slot, int viewType, boolean isPlaceholder) {
+        ViewHolder holder = slotHolders[slot];
+        if (holder != null && holder.itemViewType == viewType) {
+            return holder;
+        }
 
-            //取得当前最后一个的索引值
-            int curLastIndex = StringUtil.str2Int(getChildAt(FOCUS_DISPLAY_COUNT).getTag().toString());
+        if (slotInflating[slot]) {
+            return null;
+        }
 
-            //向左滑动，从右边把View补上
-            LayoutParams lp = firstView.getLayoutParams();
+        SlotView frameLayout = (SlotView) getChildAt(slot);
 
-            removeViewInLayout(firstView);
-            firstView.setTag(curLastIndex + 1);//添加后，索引增1
-            addViewInLayout(firstView, -1, lp);
+        ViewHolder pooled = slotPool.get(viewType);
+        if (pooled == null && inflateAsync(slot, viewType, isPlaceholder)) {
+            return null;
+        }
 
-            notifyDataSetChanged();//更新适配器
+        if (holder != null) {
+            frameLayout.detachCard(holder.itemView);
+            slotPool.put(holder);
+        }
 
+        holder = pooled;
+        if (holder == null) {
+            holder = adapter.onCreateViewHolder(frameLayout, viewType);
+            holder.itemViewType = viewType;
         }
 
+        frameLayout.attachCard(holder.itemView);
 
-        //******************** 动画效果 ********************//
-        if (timerIsRuning) {
-            //定时器运行中，不考虑动画特效
-        } else {
-            animatingView = (FrameLayout) getChildAt(1);//主图
-            animateValue = animatingView.getLeft();
-            int destX = originX.get(1);//动画最终移动的目标位
-            animator = ObjectAnimator.ofFloat(this, "animateValue", animateValue, destX);
-            animator.setInterpolator(interpolator);
-            animator.setDuration(360).start();
+        slotHolders[slot] = holder;
+        return holder;
+    }
+
+    //预取：沿预测的翻页方向，在主线程空闲时预取卡槽环之外的后续数据，翻页时数据已就绪
+    private void schedulePrefetch(int direction) {
+        if (prefetchCount <= 0 || adapter == null || getChildCount() == 0) {
+            return;
         }
 
+        if (engine.isLooping() && engine.getItemCount() <= slotCount) {//数据都已绑定在卡槽上，无需预取
+            return;
+        }
 
-        //******************** 位置初始化 ********************//
-        int num = getChildCount();
-        for (int i = 0; i < num; i++) {
-            FrameLayout rowView = (FrameLayout) getChildAt(i);
-            rowView.setLeft(originX.get(i));
-            rowView.setRight(originX.get(i) + everyWidth);
+        int from = engine.getOutsidePosition(direction);//卡槽环外的第一个
 
-            if (i == 0 || i == 1) {
-                rowView.setZ(num - 1);
-            } else {
-                rowView.setZ(num - i);
-            }
+        if (direction == prefetchDirection) {//同一方向，跳过已预取的
+            prefetchNext = direction > 0 ? Math.max(from, prefetchNext) : Math.min(from, prefetchNext);
+        } else {
+            prefetchNext = from;
+        }
+        prefetchDirection = direction;
+        prefetchEnd = from + direction * prefetchCount;
 
-            adjustScaleAndAlpha(rowView, i, 0);
+        if (hasPrefetchWork() && !isPrefetchScheduled) {
+            isPrefetchScheduled = true;
+            Looper.myQueue().addIdleHandler(prefetchIdleHandler);
         }
+    }
 
+    //是否还有需要预取的
+    private boolean hasPrefetchWork() {
+        return adapter != null && (prefetchEnd - prefetchNext) * prefetchDirection > 0;
     }
 
-    //**************************************** 滑动事件 ****************************************//
+    //卡槽容器：只包含一个卡片，是否需要离屏合成由卡片决定（卡片自身可能有重叠的背景、图片、文字）
+    private static class SlotView extends FrameLayout {
 
-    //初始化定时器
-    private void initTimerAndStart() {
+        SlotView(Context context) {
+            super(context);
+        }
 
-        if (!isOnTimer) {//定时器已关闭
-            return;
+        //放入卡片：卡槽尺寸固定，直接按卡槽大小测量、摆放，不向上请求布局（翻页换卡片时不触发整个轮播图重新布局）
+        void attachCard(View card) {
+            addViewInLayout(card, -1, new FrameLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT), true);
+
+            int width = getWidth();
+            int height = getHeight();
+            if (width > 0 && height > 0) {
+                card.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+                card.layout(0, 0, width, height);
+            } else {
+                requestLayout();//还没有摆放过，等待布局
+            }
+            invalidate();
         }
 
-        //定义
-        runnableTimer = new Runnable() {
+        //取出卡片
+        void detachCard(View card) {
+            removeViewInLayout(card);
+            invalidate();
+        }
+
+        //空卡槽没有内容；有卡片时按卡片自己的判断，简单的卡片（如只有一张图）可以直接把透明度作用到绘制上
+        @Override
+        public boolean hasOverlappingRendering() {
+            return getChildCount() > 0 && getChildAt(0).hasOverlappingRendering();
+        }
+    }
+
+    //保存的状态：只保存当前的数据库索引
+    static class SavedState extends BaseSavedState {
+
+        int currentItem;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel source) {
+            super(source);
+            currentItem = source.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(currentItem);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
+            }
+
             @Override
-            public void run() {
-                try {
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    //卡片的ViewHolder：缓存卡片里的子View，避免每次绑定都findViewById
+    public static class ViewHolder {
+
+        public final View itemView;
+        int itemViewType;
+
+        public ViewHolder(View itemView) {
+            this.itemView = itemView;
+        }
+
+        public int getItemViewType() {
+            return itemViewType;
+        }
+    }
+
+    //按类型回收的ViewHolder，每种类型最多保留max个，超出的直接丢弃。
+    //每个轮播图默认有自己的回收池；也可以创建一个，通过setSlotPool()在多个轮播图之间共用（类似RecyclerView.RecycledViewPool）
+    public static class SlotPool {
+
+        private static final int DEFAULT_MAX = 8;//共用时每种类型默认保留的个数
+
+        private SparseArray<ArrayList<ViewHolder>> scrap = new SparseArray<>();
+        private int max;
+
+        public SlotPool() {
+            this(DEFAULT_MAX);
+        }
+
+        public SlotPool(int max) {
+            this.max = max;
+        }
+
+        //每种类型最多保留的个数：多余的丢弃
+        public void setMaxRecycledViews(int max) {
+            this.max = max;
+            for (int i = 0; i < scrap.size(); i++) {
+                ArrayList<ViewHolder> holders = scrap.valueAt(i);
+                while (holders.size() > max) {
+                    holders.remove(holders.size() - 1);
+                }
+            }
+        }
+
+        //回收池中指定类型的个数
+        public int getRecycledViewCount(int viewType) {
+            ArrayList<ViewHolder> holders = scrap.get(viewType);
+            return holders == null ? 0 : holders.size();
+        }
+
+        public void clear() {
+            scrap.clear();
+        }
+
+        ViewHolder get(int viewType) {
+            ArrayList<ViewHolder> holders = scrap.get(viewType);
+            if (holders == null || holders.isEmpty()) {
+                return null;
+            }
+            return holders.remove(holders.size() - 1);
+        }
+
+        void put(ViewHolder holder) {
+            ArrayList<ViewHolder> holders = scrap.get(holder.itemViewType);
+            if (holders == null) {
+                holders = new ArrayList<>(Math.min(max, DEFAULT_MAX));
+                scrap.put(holder.itemViewType, holders);
+            }
+            if (holders.size() < max) {
+                holders.add(holder);
+            }
+        }
+    }
+
+    //适配器的抽象类
+    public static abstract class Adapter {
+
+        private PileLayout observer;//绑定的轮播图
+
+        //Layout的ID：未重写onCreateViewHolder时使用
+        public int getLayoutId() {
+            return 0;
+        }
+
+        //后台装载（可选）：每种类型的Layout的ID，默认0（不在后台装载）。
+        //不为0时，首帧之后的卡片在后台装载，只通过createViewHolder()创建ViewHolder，不会调用onCreateViewHolder()
+        public int getItemLayoutId(int viewType) {
+            return 0;
+        }
+
+        //Item数量：分页数据源为已加载的个数
+        public abstract int getItemCount();
+
+        //是否是分页数据源：数据个数未知或还在增长，轮播图不循环，快翻到已加载的末尾时回调onLoadMore。
+        //可以随数据变化（每次数据更新通知时重新查询），全部加载后返回false即恢复循环
+        public boolean isPaged() {
+            return false;
+        }
+
+        //分页数据源：加载更多，加载后调用notifyItemRangeInserted
+        public void onLoadMore(int loadedCount) {
+        }
+
+        //Item类型：不同类型使用不同的卡片布局
+        public int getItemViewType(int index) {
+            return 0;
+        }
+
+        //是否是占位卡片（数据尚未加载）：占位卡片不响应点击，也不在后台装载。只有分页数据源有占位卡片
+        boolean isPlaceholder(int index) {
+            return false;
+        }
+
+        //创建ViewHolder：默认装载getItemLayoutId()，为0时装载getLayoutId()
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            int layoutId = getItemLayoutId(viewType);
+            if (layoutId == 0) {
+                layoutId = getLayoutId();
+            }
+            return createViewHolder(LayoutInflater.from(parent.getContext()).inflate(layoutId, parent, false), viewType);
+        }
+
+        //用装载好的卡片创建ViewHolder：默认的onCreateViewHolder()与后台装载都会调用。
+        //getItemLayoutId()不为0时，这是唯一的创建入口，自定义的ViewHolder需要在这里创建
+        public ViewHolder createViewHolder(View itemView, int viewType) {
+            return new ViewHolder(itemView);
+        }
+
+        //绑定ViewHolder：默认调用bindView
+        public void onBindViewHolder(ViewHolder holder, int index) {
+            bindView(holder.itemView, index);
+        }
+
+        //绑定视图
+        public void bindView(View view, int index) {
+        }
+
+        //点击事件
+        public void onItemClick(View view, int position) {
+        }
+
+        //显示中
+        public void displaying(int position) {
+        }
+
+        //预取：即将显示的数据，可以提前加载图片等
+        public void onPrefetch(int index) {
+        }
+
+        //数据更新通知：全部重新绑定
+        public final void notifyDataSetChanged() {
+            if (observer != null) {
+                observer.notifyDataSetChanged();
+            }
+        }
+
+        //单条数据更新通知
+        public final void notifyItemChanged(int index) {
+            if (observer != null) {
+                observer.notifyItemChanged(index);
+            }
+        }
+
+        //多条数据更新通知
+        public final void notifyItemRangeChanged(int start, int count) {
+            if (observer != null) {
+                observer.notifyItemRangeChanged(start, count);
+            }
+        }
+
+        //插入数据通知
+        public final void notifyItemRangeInserted(int start, int count) {
+            if (observer != null) {
+                observer.notifyItemRangeInserted(start, count);
+            }
+        }
+
+        //删除数据通知
+        public final void notifyItemRangeRemoved(int start, int count) {
+            if (observer != null) {
+                observer.notifyItemRangeRemoved(start, count);
+            }
+        }
+
+    }
+
+    //分页加载的适配器：在后台线程按页加载数据，首帧即可显示（未加载到的卡槽显示占位卡片），每页加载完成后只重新绑定占位的卡槽。
+    //绑定或预取到占位卡片时加载下一页，每次只加载一页；加载失败的在下次绑定或预取占位时重试
+    public static abstract class PagedAdapter<T> extends Adapter {
+
+        public static final int VIEW_TYPE_PLACEHOLDER = -1;//占位卡片的类型
+        private static final int PLACEHOLDER_COLOR = 0xFFEEEEEE;//默认占位卡片的颜色
+        private static final ExecutorService LOAD_EXECUTOR = Executors.newSingleThreadExecutor();//加载线程
+
+        private final int pageSize;//每页的个数
+        private final ArrayList<T> items = new ArrayList<>();//已加载的数据
+        private boolean hasMore = true;//是否还有下一页
+        private boolean isLoading = false;//是否加载中
+        private int generation = 0;//每次重新加载加1，丢弃之前的加载结果
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        public PagedAdapter(int pageSize) {
+            this.pageSize = Math.max(1, pageSize);
+        }
+
+        //加载一页数据（加载线程）：返回的个数少于pageSize表示没有更多
+        protected abstract List<T> loadPage(int offset, int pageSize) throws Exception;
+
+        //绑定已加载的数据
+        public abstract void onBindItem(ViewHolder holder, T item, int index);
+
+        //创建数据卡片：默认装载getLayoutId()
+        public ViewHolder onCreateItemViewHolder(ViewGroup parent, int viewType) {
+            return super.onCreateViewHolder(parent, viewType);
+        }
+
+        //数据卡片的类型（不能是VIEW_TYPE_PLACEHOLDER）
+        public int getLoadedItemViewType(int index) {
+            return 0;
+        }
+
+        //创建占位卡片：默认是一个纯色的View，不装载布局
+        public ViewHolder onCreatePlaceholder(ViewGroup parent) {
+            View view = new View(parent.getContext());
+            view.setBackgroundColor(PLACEHOLDER_COLOR);
+            return new ViewHolder(view);
+        }
+
+        //绑定占位卡片
+        public void onBindPlaceholder(ViewHolder holder, int index) {
+        }
+
+        //预取已加载的数据：可以提前加载图片等
+        public void onPrefetchItem(T item, int index) {
+        }
+
+        //已加载的数据，未加载时为null
+        public T getItem(int index) {
+            return isLoaded(index) ? items.get(index) : null;
+        }
+
+        public boolean isLoaded(int index) {
+            return index >= 0 && index < items.size();
+        }
+
+        @Override
+        boolean isPlaceholder(int index) {
+            return !isLoaded(index);
+        }
+
+        //重新加载：清空已加载的数据，从第一页开始
+        public void reload() {
+            generation++;
+            isLoading = false;
+            hasMore = true;
+
+            int count = items.size();
+            items.clear();
+            notifyItemRangeRemoved(0, count);//都变为占位卡片，绑定时加载第一页
+        }
+
+        //已加载的个数，还有下一页时加上一页的占位
+        @Override
+        public final int getItemCount() {
+            return items.size() + (hasMore ? pageSize : 0);
+        }
+
+        //还有下一页时分页；全部加载后恢复循环
+        @Override
+        public boolean isPaged() {
+            return hasMore;
+        }
+
+        @Override
+        public final int getItemViewType(int index) {
+            return isLoaded(index) ? getLoadedItemViewType(index) : VIEW_TYPE_PLACEHOLDER;
+        }
+
+        @Override
+        public final ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return viewType == VIEW_TYPE_PLACEHOLDER ? onCreatePlaceholder(parent) : onCreateItemViewHolder(parent, viewType);
+        }
+
+        @Override
+        public final void onBindViewHolder(ViewHolder holder, int index) {
+            if (isLoaded(index)) {
+                onBindItem(holder, items.get(index), index);
+            } else {
+                onBindPlaceholder(holder, index);
+                loadNextPage();
+            }
+        }
+
+        @Override
+        public final void onPrefetch(int index) {
+            if (isLoaded(index)) {
+                onPrefetchItem(items.get(index), index);
+            } else {
+                loadNextPage();
+            }
+        }
+
+        @Override
+        public final void onLoadMore(int loadedCount) {
+            loadNextPage();
+        }
+
+        //在加载线程加载下一页，完成后回到主线程
+        private void loadNextPage() {
+            if (isLoading || !hasMore) {
+                return;
+            }
+
+            isLoading = true;
+            final int offset = items.size();
+            final int loadGeneration = generation;
+
+            LOAD_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<T> page = null;
+                    try {
+                        page = loadPage(offset, pageSize);
+                    } catch (Exception e) {
+                        VLog.printException("PagedAdapter分页加载异常", e);
+                    }
+
+                    final List<T> result = page;
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (loadGeneration == generation) {//期间没有重新加载
+                                onPageLoaded(offset, result);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        //一页加载完成（主线程）：先重新绑定显示占位的卡槽，再更新数据个数（新的一页占位，或者没有更多时清空多余的占位）
+        private void onPageLoaded(int offset, List<T> page) {
+            isLoading = false;
+            if (page == null) {//加载失败
+                return;
+            }
+
+            int oldCount = getItemCount();
+            items.addAll(page);
+            if (page.size() < pageSize) {
+                hasMore = false;
+            }
+
+            notifyItemRangeChanged(offset, page.size());
+
+            int newCount = getItemCount();
+            if (newCount > oldCount) {
+                notifyItemRangeInserted(oldCount, newCount - oldCount);
+            } else if (newCount < oldCount) {
+                notifyItemRangeRemoved(newCount, oldCount - newCount);
+            }
+        }
+    }
+
+    //**************************************** 点击事件 ****************************************//
+
+    //用于进行点击事件的拦截
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+
+        int action = event.getActionMasked();
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+
+                stopTimer();
+
+                scrollMode = MODE_IDLE;//空闲模式：方向确定之前不干预父控件，父控件的滑动不受影响
+
+                downX = (int) event.getX();
+                downY = (int) event.getY();
+                lastX = event.getX();
+
+                if (velocityTracker == null) {
+                    velocityTracker = VelocityTracker.obtain();
+                } else {
+                    velocityTracker.clear();
+                }
+                velocityTracker.addMovement(event);
+
+                cancelAnimation();
+
+                if (engine.getScrollOffset() != 0) {//归位途中按下，直接接着拖动
+                    if (engine.normalizeScrollOffset() != 0) {//多页的过渡：先换算到一页之内，拖动时不会跳动
+                        bindSlots(false);
+                        applySlotTransforms();
+                    }
+                    startDrag();
+                    return true;
+                }
+
+                break;
+            case MotionEvent.ACTION_MOVE:
+                addVelocityMovement(event);
+
+                if (scrollMode == MODE_IDLE && checkDragDirection(event)) {
+                    return true;//水平滑动，需要拦截，不会再触发其他事件。拦截后走下面的onTouchEvent对应的方法
+                }
+
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+
+                recycleVelocityTracker();//父控件的禁止拦截标记在抬起时由系统清除
+
+                if (engine.getScrollOffset() != 0) {//按下时打断了动画，需要归位
+                    handleScrollChangeEnd(0);
+                }
+                startTimer();
+
+                //ACTION_UP还能拦截（如果是水平滑动，抬起后不会走到这里），说明：
+                //1.手指【没有水平】滑动
+                //2.是一个click事件
+
+                break;
+        }
+
+        return false;//默认不拦截的。不会走下面的onTouchEvent对应的方法
+    }
+
+    //判断滑动方向：移动超过touchSlop后，水平距离大的开始拖动，垂直距离大的交给父控件。返回是否开始拖动
+    private boolean checkDragDirection(MotionEvent event) {
+        float dx = event.getX() - downX;
+        float xDistance = Math.abs(dx);
+        float yDistance = Math.abs(event.getY() - downY);
+
+        if (xDistance > touchSlop && xDistance > yDistance) {//水平滑动
+            startDrag();
+            lastX = downX + (dx > 0 ? touchSlop : -touchSlop);//扣除判断方向用掉的距离，避免跳动
+            return true;
+        } else if (yDistance > touchSlop && yDistance > xDistance) {
+            scrollMode = MODE_VERTICAL;//垂直滑动，不拦截，父控件按自己的touchSlop接管
+        }
+        return false;
+    }
+
+    //开始拖动：禁止父控件拦截，并通知嵌套滑动的父控件
+    private void startDrag() {
+        scrollMode = MODE_HORIZONTAL;
+        setParentScrollAble(false);
+        startNestedScroll(ViewCompat.SCROLL_AXIS_HORIZONTAL, ViewCompat.TYPE_TOUCH);
+    }
+
+    //重置手势状态：未结束的拖动直接放弃
+    private void resetTouchState() {
+        recycleVelocityTracker();
+        if (scrollMode == MODE_HORIZONTAL) {
+            stopNestedScroll(ViewCompat.TYPE_TOUCH);
+        }
+        scrollMode = MODE_IDLE;
+    }
+
+    //设置父控件是否可以获取到触摸处理权限
+    private void setParentScrollAble(boolean flag) {
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(!flag);//请求不要拦截
+        }
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+    //用于处理点击事件
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
 
-                    if (!timerIsRuning) {
-                        return;
+        int action = event.getActionMasked();
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                break;
+            case MotionEvent.ACTION_MOVE:
+                addVelocityMovement(event);
+
+                if (scrollMode == MODE_IDLE) {//没有子控件消费按下事件时，直接在这里判断方向
+                    checkDragDirection(event);
+                }
+                if (scrollMode != MODE_HORIZONTAL) {
+                    break;
+                }
+
+                int currentX = (int) event.getX();
+                int dx = (int) (lastX - currentX);//嵌套滑动的方向：手指左滑为正
+                int offsetX = 0;//父控件滑动后，本控件在窗口中的位移
+
+                if (dispatchNestedPreScroll(dx, 0, nestedConsumed, nestedOffset, ViewCompat.TYPE_TOUCH)) {
+                    dx -= nestedConsumed[0];//父控件先消费
+                    offsetX += nestedOffset[0];
+                }
+
+                float scrollOffset = engine.getScrollOffset();
+                diff_X = -dx;
+                handleScrollChangeIng(diff_X);//手指拖动过程中的处理
+
+                int consumedX = (int) (scrollOffset - engine.getScrollOffset());
+                if (dispatchNestedScroll(consumedX, 0, dx - consumedX, 0, nestedOffset, ViewCompat.TYPE_TOUCH)) {
+                    offsetX += nestedOffset[0];//翻不动的部分（分页数据源的两端）交给父控件
+                }
+
+                lastX = currentX - offsetX;
+
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+
+                float velocity = 0;//取消时不考虑惯性
+                if (action == MotionEvent.ACTION_UP && velocityTracker != null) {
+                    velocityTracker.addMovement(event);
+                    velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+                    velocity = velocityTracker.getXVelocity();
+                }
+                recycleVelocityTracker();
+
+                if (scrollMode == MODE_HORIZONTAL) {
+                    if (velocity != 0 && !dispatchNestedPreFling(-velocity, 0)) {
+                        dispatchNestedFling(-velocity, 0, true);//惯性由轮播图翻页消费
+                    } else {
+                        velocity = 0;//父控件消费了惯性，只归位
                     }
+                    stopNestedScroll(ViewCompat.TYPE_TOUCH);
+                }
+                scrollMode = MODE_IDLE;
 
-                    handleAnimateForTimer();
+                handleScrollChangeEnd(velocity);//处理滚动后的最终逻辑
 
-                    handlerTimer.postDelayed(this, timerDelayTime * 1000);//发送定时逻辑
+                startTimer();//开启定时器
+
+                break;
+        }
 
-                } catch (Exception e) {
-                    VLog.printException("initTimerAndStart定时器模拟手指效果异常", e);
+        return true;
+    }
+
+    //记录速度
+    private void addVelocityMovement(MotionEvent event) {
+        if (velocityTracker != null) {
+            velocityTracker.addMovement(event);
+        }
+    }
+
+    private void recycleVelocityTracker() {
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    //**************************************** 嵌套滑动 ****************************************//
+
+    @Override
+    public void setNestedScrollingEnabled(boolean enabled) {
+        nestedScrollingHelper.setNestedScrollingEnabled(enabled);
+    }
+
+    @Override
+    public boolean isNestedScrollingEnabled() {
+        return nestedScrollingHelper.isNestedScrollingEnabled();
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes) {
+        return nestedScrollingHelper.startNestedScroll(axes);
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes, int type) {
+        return nestedScrollingHelper.startNestedScroll(axes, type);
+    }
+
+    @Override
+    public void stopNestedScroll() {
+        nestedScrollingHelper.stopNestedScroll();
+    }
+
+    @Override
+    public void stopNestedScroll(int type) {
+        nestedScrollingHelper.stopNestedScroll(type);
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent() {
+        return nestedScrollingHelper.hasNestedScrollingParent();
+    }
 
-                    timerIsRuning = false;
-                    isForceLeftScroll = false;
+    @Override
+    public boolean hasNestedScrollingParent(int type) {
+        return nestedScrollingHelper.hasNestedScrollingParent(type);
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int[] offsetInWindow) {
+        return nestedScrollingHelper.dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int[] offsetInWindow, int type) {
+        return nestedScrollingHelper.dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, offsetInWindow, type);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return nestedScrollingHelper.dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow, int type) {
+        return nestedScrollingHelper.dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow, type);
+    }
+
+    @Override
+    public boolean dispatchNestedFling(float velocityX, float velocityY, boolean consumed) {
+        return nestedScrollingHelper.dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return nestedScrollingHelper.dispatchNestedPreFling(velocityX, velocityY);
+    }
+
+    //**************************************** 滑动事件 ****************************************//
+
+    //手指拖动过程中的处理：只累计偏移量，然后由偏移量计算变换，不做任何分配
+    private void handleScrollChangeIng(int diffX) {
+        if (diffX == 0) {
+            return;
+        }
+
+        long startNanos = beginMetricsSession(MetricsSnapshot.TYPE_GESTURE);
+
+        engine.scrollBy(diffX);//最多滑动一页
+
+        int direction = diffX < 0 ? PileEngine.PAGE_LEFT : PileEngine.PAGE_RIGHT;//手指左滑，即将显示后面的数据
+        if (direction != prefetchDirection) {
+            schedulePrefetch(direction);
+        }
+
+        setSlotsLayerPromoted(true);
+        applySlotTransforms();
+
+        if (metricsRecorder != null) {
+            metricsRecorder.addSection(PileMetricsRecorder.SECTION_SCROLL, System.nanoTime() - startNanos);
+        }
+    }
+
+    //手指松开后的处理：velocity为松手时的水平速度（像素/秒，向右为正）
+    private void handleScrollChangeEnd(float velocity) {
+        long startNanos = beginMetricsSession(MetricsSnapshot.TYPE_GESTURE);
+
+        //判断是否最终向右滑动还是向左移动（定时器运行中强制向左；速度够快时按惯性，可以一次翻多页），只转动环头，不调整子View的顺序
+        int pages = engine.settle(velocity, minFlingVelocity);
+        if (pages != 0) {
+            if (metricsRecorder != null) {
+                for (int i = Math.abs(pages); i > 0; i--) {
+                    metricsRecorder.onReorder();
                 }
+            }
+
+            bindSlots(false);//只绑定转到隐藏位（右滑）或最后面（左滑）的卡槽
+            schedulePrefetch(pages > 0 ? PileEngine.PAGE_LEFT : PileEngine.PAGE_RIGHT);
+            checkLoadMore();
+        }
+
+        //定时器运行中，不考虑动画特效（ViewPropertyAnimator引擎除外）
+        settleToRest(velocity, animationEngine == ENGINE_VIEW_PROPERTY || !timerIsRuning);
+
+        if (metricsRecorder != null) {
+            metricsRecorder.addSection(PileMetricsRecorder.SECTION_SCROLL_END, System.nanoTime() - startNanos);
+            endMetricsSessionIfIdle();
+        }
+
+    }
 
+    //从当前的偏移量归位：velocity为起始速度（像素/秒），animate为false时直接归位
+    private void settleToRest(float velocity, boolean animate) {
+        if (!animate) {
+            engine.setScrollOffset(0);
+            applySlotTransforms();
+        } else if (animationEngine == ENGINE_VIEW_PROPERTY) {
+            applySlotTransforms();//先摆好起始状态
+            setSlotsLayerPromoted(true);
+            animateSlotsToRest(getSettleDuration(engine.getScrollOffset(), velocity));
+        } else {
+            setSlotsLayerPromoted(true);
+            if (springAnimation == null) {
+                springAnimation = new SpringAnimation(this, ANIMATE_VALUE, 0);
+                springAnimation.getSpring().setStiffness(SpringForce.STIFFNESS_LOW).setDampingRatio(SpringForce.DAMPING_RATIO_NO_BOUNCY);
+                springAnimation.setMinimumVisibleChange(DynamicAnimation.MIN_VISIBLE_CHANGE_PIXELS);
+                springAnimation.addEndListener(springEndListener);
             }
-        };
+            springAnimation.setStartValue(engine.getScrollOffset());
+            springAnimation.setStartVelocity(velocity);//从松手时的速度开始减速，接得上手势
+            springAnimation.start();
+        }
+
+        if (engine.getScrollOffset() == 0 && !isSlotsAnimating) {//没有动画（含定时器直接翻页），直接恢复
+            setSlotsLayerPromoted(false);
+        }
+    }
+
+    //**************************************** 定时器 ****************************************//
+
+    //初始化定时器
+    private void initTimerAndStart() {
+
+        if (!isOnTimer) {//定时器已关闭
+            return;
+        }
 
         //运行定时器
         startTimer();
@@ -743,9 +1699,9 @@ public class PileLayout extends ViewGroup {
         }
 
         timerIsRuning = true;
-        isForceLeftScroll = true;
+        engine.setForcedPage(PileEngine.PAGE_LEFT);
 
-        handlerTimer.postDelayed(runnableTimer, timerDelayTime * 1000);
+        updateTimerSchedule();
     }
 
     private void stopTimer() {
@@ -755,50 +1711,361 @@ public class PileLayout extends ViewGroup {
         }
 
         timerIsRuning = false;
-        isForceLeftScroll = false;
+        engine.setForcedPage(PileEngine.PAGE_NONE);
 
-        handlerTimer.removeCallbacks(runnableTimer);
+        updateTimerSchedule();
     }
 
+    //定时器是否应该运行：开启中、有可以翻页的数据、在窗口中、可见、屏幕点亮、页面未暂停
+    private boolean shouldTimerRun() {
+        return timerIsRuning && engine.getItemCount() > 1 && isAttachedToWindow() && isVisibleAggregated && isWindowVisible && isScreenOn && !isLifecyclePaused;
+    }
+
+    //按当前状态注册或挂起定时器：挂起后不再占用PileTicker，也不会触发翻页与绑定
+    private void updateTimerSchedule() {
+        boolean shouldRun = shouldTimerRun();
+        if (shouldRun == isTimerScheduled) {
+            return;
+        }
+
+        isTimerScheduled = shouldRun;
+        long now = SystemClock.uptimeMillis();
+
+        if (shouldRun) {
+            if (suspendedTime > 0) {//挂起期间本应执行的次数，计为跳过
+                timerTicksSkipped += (now - suspendedTime) / getTimerInterval();
+                suspendedTime = 0;
+            }
+            PileTicker.getInstance().schedule(this, getTimerInterval());
+        } else {
+            suspendedTime = timerIsRuning ? now : 0;
+            PileTicker.getInstance().cancel(this);
+        }
+    }
+
+    //设置页面的生命周期（可选）：页面暂停时挂起定时器
+    public void setLifecycle(Lifecycle lifecycle) {
+        if (this.lifecycle != null) {
+            this.lifecycle.removeObserver(lifecycleObserver);
+        }
+
+        this.lifecycle = lifecycle;
+        isLifecyclePaused = false;
+
+        if (lifecycle != null) {
+            if (lifecycleObserver == null) {
+                lifecycleObserver = new TimerLifecycleObserver();
+            }
+            isLifecyclePaused = !lifecycle.getCurrentState().isAtLeast(Lifecycle.State.RESUMED);
+            lifecycle.addObserver(lifecycleObserver);
+        }
+
+        updateTimerSchedule();
+    }
+
+    //页面生命周期的监听
+    private class TimerLifecycleObserver implements LifecycleObserver {
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
+        void onResume() {
+            isLifecyclePaused = false;
+            updateTimerSchedule();
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
+        void onPause() {
+            isLifecyclePaused = true;
+            updateTimerSchedule();
+        }
+    }
+
+    //统计：执行的定时翻页次数
+    public int getTimerTicksExecuted() {
+        return timerTicksExecuted;
+    }
+
+    //统计：跳过的定时翻页次数（不可见、挂起）
+    public int getTimerTicksSkipped() {
+        return timerTicksSkipped;
+    }
+
+    //定时器的间隔：毫秒
+    long getTimerInterval() {
+        return timerDelayTime * 1000L;
+    }
+
+    //是否可以执行定时翻页：可见且在屏幕内（滚出列表的不会有回调，在这里判断）
+    private boolean isTickable() {
+        return isShown() && getGlobalVisibleRect(visibleRect);
+    }
+
+    //定时器到期（PileTicker在帧回调中调用）
+    void onTimerTick() {
+        if (!timerIsRuning) {
+            return;
+        }
+
+        if (!isTickable()) {
+            timerTicksSkipped++;
+            return;
+        }
+
+        try {
+
+            timerTicksExecuted++;
+            beginMetricsSession(MetricsSnapshot.TYPE_TRANSITION);
+            handleAnimateForTimer();
+
+        } catch (Exception e) {
+            VLog.printException("onTimerTick定时器模拟手指效果异常", e);
+
+            stopTimer();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateTimerSchedule();
+
+        if (isSlotPoolShared && hasSetAdapter) {//离开窗口时卡片已还给共用的回收池，重新取出并绑定
+            bindSlots(false);
+            applySlotTransforms();
+        }
+    }
+
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        isVisibleAggregated = isVisible;
+        updateTimerSchedule();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        isWindowVisible = visibility == VISIBLE;
+        updateTimerSchedule();
+    }
+
+    @Override
+    public void onScreenStateChanged(int screenState) {
+        super.onScreenStateChanged(screenState);
+        isScreenOn = screenState == SCREEN_STATE_ON;
+        updateTimerSchedule();
+    }
+
+    //**************************************** 性能统计 ****************************************//
+
+    //设置性能统计的监听（可选）：每次手势或过渡结束后回调一次快照，设置为null关闭
+    public void setMetrics(Metrics metrics) {
+        metricsRecorder = metrics != null ? new PileMetricsRecorder(metrics) : null;
+    }
+
+    //开始统计周期，返回当前时间用于统计环节耗时
+    private long beginMetricsSession(int type) {
+        if (metricsRecorder == null) {
+            return 0;
+        }
+
+        metricsRecorder.begin(type, getDisplay() != null ? getDisplay().getRefreshRate() : 0);
+        return System.nanoTime();
+    }
+
+    //结束统计周期
+    private void endMetricsSession() {
+        if (metricsRecorder != null) {
+            metricsRecorder.end(timerTicksExecuted, timerTicksSkipped);
+        }
+    }
+
+    //没有动画时，统计周期到此结束；有动画的在动画结束时结束
+    private void endMetricsSessionIfIdle() {
+        if ((springAnimation == null || !springAnimation.isRunning()) && !isSlotsAnimating) {
+            endMetricsSession();
+        }
+    }
+
+    //性能统计的监听
+    public interface Metrics {
+        void onMetrics(MetricsSnapshot snapshot);
+    }
+
+    //性能统计的快照：耗时单位为微秒（duration为毫秒）
+    public static final class MetricsSnapshot {
+
+        public static final int TYPE_GESTURE = 0;//手势：拖动到归位
+        public static final int TYPE_TRANSITION = 1;//过渡：定时翻页到归位
+
+        public final int type;
+        public final long duration;//周期时长：毫秒
+        public final int frames;//渲染的帧数
+        public final int framesOverBudget;//超时的帧数
+        public final long layoutTime;//onLayout耗时
+        public final long scrollTime;//handleScrollChangeIng耗时
+        public final long scrollEndTime;//handleScrollChangeEnd耗时（含其中的绑定）
+        public final long bindTime;//绑定耗时
+        public final int binds;//绑定次数
+        public final int reorders;//翻页次数
+        public final int timerTicksExecuted;//累计执行的定时翻页次数
+        public final int timerTicksSkipped;//累计跳过的定时翻页次数
+
+        MetricsSnapshot(int type, long duration, int frames, int framesOverBudget, long layoutTime, long scrollTime, long scrollEndTime,
+                        long bindTime, int binds, int reorders, int timerTicksExecuted, int timerTicksSkipped) {
+            this.type = type;
+            this.duration = duration;
+            this.frames = frames;
+            this.framesOverBudget = framesOverBudget;
+            this.layoutTime = layoutTime;
+            this.scrollTime = scrollTime;
+            this.scrollEndTime = scrollEndTime;
+            this.bindTime = bindTime;
+            this.binds = binds;
+            this.reorders = reorders;
+            this.timerTicksExecuted = timerTicksExecuted;
+            this.timerTicksSkipped = timerTicksSkipped;
+        }
+
+        @Override
+        public String toString() {
+            return (type == TYPE_GESTURE ? "gesture" : "transition")
+                    + " duration=" + duration + "ms frames=" + frames + " overBudget=" + framesOverBudget
+                    + " layout=" + layoutTime + "us scroll=" + scrollTime + "us scrollEnd=" + scrollEndTime + "us bind=" + bindTime
+                    + "us binds=" + binds + " reorders=" + reorders + " ticks=" + timerTicksExecuted + "/" + timerTicksSkipped;
+        }
+    }
 
     //**************************************** 动画 ****************************************//
     public void setAnimateValue(float animateValue) {
-        this.animateValue = animateValue; // 当前应该在的位置
-        int dx = Math.round(animateValue - animatingView.getLeft());
-        VLog.d("dx:" + dx);
+        engine.setScrollOffset(animateValue); // 当前应该在的位置
+        applySlotTransforms();
+    }
 
-        handleAnimateValue(dx);
+    public float getAnimateValue() {
+        return engine.getScrollOffset();
     }
 
-    //处理动画效果
-    private void handleAnimateValue(int diffX) {
-        if (diffX == 0) {
-            return;
+    //ViewPropertyAnimator的归位时长：剩余距离越远越长（按页数的平方根增长），松手速度越快越短（匀减速走完剩余距离需要 2*距离/速度）
+    private int getSettleDuration(float distance, float velocity) {
+        int pageWidth = Math.max(1, engine.getPageWidth());
+        int duration = (int) (ANIMATION_DURATION * Math.sqrt(Math.abs(distance) / pageWidth));
+
+        if (velocity != 0) {
+            duration = Math.min(duration, (int) (2000 * Math.abs(distance) / Math.abs(velocity)));
         }
+        return Math.max(MIN_ANIMATION_DURATION, duration);
+    }
 
-        int num = getChildCount();
+    //ViewPropertyAnimator引擎：一次性提交每个卡槽的目标变换，动画过程中不再逐帧计算偏移量
+    private void animateSlotsToRest(int duration) {
+        engine.setScrollOffset(0);
+        engine.computeTransforms();//静止状态
+        isSlotsAnimating = true;
 
-        //整体移动：支持左右滑动
+        int mainSlot = engine.getRingSlot(PileEngine.FIRST_FRAME_SHOW_INDEX);
+        int num = getChildCount();
         for (int i = 0; i < num; i++) {
-            View itemView = getChildAt(i);
+            float scale = engine.getScale(i);
+
+            getChildAt(i).animate()
+                    .translationX(engine.getTranslationX(i))
+                    .alpha(engine.getAlpha(i))
+                    .scaleX(scale)
+                    .scaleY(scale)
+                    .z(engine.getZ(i))
+                    .setInterpolator(interpolator)
+                    .setDuration(duration)
+                    .withEndAction(i == mainSlot ? slotsAnimationEnd : null);
+        }
+    }
 
-            if (i == 0 || i == 1) {//主图
-                itemView.offsetLeftAndRight(diffX);
-            } else {
-                itemView.offsetLeftAndRight(diffX / 7);
+    //取消动画
+    private void cancelAnimation() {
+        if (null != springAnimation) {
+            springAnimation.cancel();//停在当前的偏移量，接着拖动
+        }
+
+        if (isSlotsAnimating) {//ViewPropertyAnimator无法得知中间的偏移量，直接归位
+            int num = getChildCount();
+            for (int i = 0; i < num; i++) {
+                getChildAt(i).animate().cancel();
             }
+            isSlotsAnimating = false;
+            setSlotsLayerPromoted(false);
+            applySlotTransforms();
+            endMetricsSession();//取消时不会执行withEndAction，在这里结束本次统计
+        }
+    }
+
+    //拖动与动画期间把卡槽提升为硬件层，透明度、位移与缩放只需合成，无需重绘卡片；静止时恢复，释放显存
+    private void setSlotsLayerPromoted(boolean promoted) {
+        if (!hardwareLayerEnabled || isLayerPromoted == promoted) {
+            return;
+        }
+
+        isLayerPromoted = promoted;
 
-            adjustScaleAndAlpha(itemView, i, diffX);
+        int layerType = promoted ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE;
+        int num = getChildCount();
+        for (int i = 0; i < num; i++) {
+            getChildAt(i).setLayerType(layerType, null);
         }
     }
 
-    public float getAnimateValue() {
-        return animateValue;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelAnimation();
+        nestedScrollingHelper.onDetachedFromWindow();
+
+        updateTimerSchedule();//不再持有引用，添加到窗口后重新注册
+
+        if (isPrefetchScheduled) {
+            isPrefetchScheduled = false;
+            Looper.myQueue().removeIdleHandler(prefetchIdleHandler);
+        }
+        setSlotsLayerPromoted(false);
+
+        engine.setScrollOffset(0);//离开窗口时直接归位
+        applySlotTransforms();
+
+        if (isSlotPoolShared) {//共用回收池：卡片还给回收池，供在屏幕内的轮播图使用
+            removeCallbacks(deferredBind);
+            recycleSlotHolders();
+        }
+    }
+
+    //保存当前的数据库索引（需要设置id）。列表中复用的轮播图由bind的savedPosition恢复
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.currentItem = getCurrentItem();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        if (savedState.currentItem == PileEngine.NO_INDEX) {
+            return;
+        }
+        if (adapter == null || getChildCount() == 0) {//尚未绑定，绑定时再跳转
+            pendingCurrentItem = savedState.currentItem;
+        } else {
+            setCurrentItem(savedState.currentItem, false);
+        }
     }
 
     //处理定时器的动画特效
     private void handleAnimateForTimer() {
-        handleScrollChangeEnd();//向左滑动图层。初始化定时器已指定：isForceLeftScroll = true;
+        handleScrollChangeEnd(0);//向左滑动图层。开启定时器时已指定强制向左翻页
     }
 
 }
\ No newline at end of file
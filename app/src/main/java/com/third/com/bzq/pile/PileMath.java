@@ -0,0 +1,75 @@
+package com.third.com.bzq.pile;
+
+/**
+ * 轮播图-计算
+ * <p>
+ * 与View无关的计算：索引换算、卡槽环的转动、卡位状态的插值。不依赖Android，可以直接在JVM上测试与基准测试。
+ */
+
+public final class PileMath {
+
+    private PileMath() {
+    }
+
+    //通过positon转换为数据表对应的索引：向下取模，负数从末尾倒着查找（-1是最后一个）。数据为空时返回-1
+    public static int getDataIndex(int position, int itemCount) {
+        if (itemCount <= 0) {
+            return -1;
+        }
+
+        int index = position % itemCount;//与position同号
+        return index + ((index >> 31) & itemCount);//负数再加上itemCount，不需要分支
+    }
+
+    //卡槽环中偏移为offset的卡槽
+    public static int getRingSlot(int ringHead, int offset, int slotCount) {
+        int slot = ringHead + offset;
+        return slot >= slotCount ? slot - slotCount : slot;
+    }
+
+    //卡槽在环中的偏移：0是隐藏位，1是主图
+    public static int getRingOffset(int ringHead, int slot, int slotCount) {
+        int offset = slot - ringHead;
+        return offset < 0 ? offset + slotCount : offset;
+    }
+
+    //向左翻页：隐藏位的卡槽转到最后面，索引是当前最后一个加1。返回新的环头
+    public static int rotateLeft(int[] slotPosition, int ringHead, int slotCount) {
+        slotPosition[ringHead] = slotPosition[getRingSlot(ringHead, slotCount - 1, slotCount)] + 1;
+        return getRingSlot(ringHead, 1, slotCount);
+    }
+
+    //向右翻页：最后一个卡槽转到隐藏位，索引是当前第一个减1。返回新的环头
+    public static int rotateRight(int[] slotPosition, int ringHead, int slotCount) {
+        int lastSlot = getRingSlot(ringHead, slotCount - 1, slotCount);
+        slotPosition[lastSlot] = slotPosition[ringHead] - 1;
+        return lastSlot;
+    }
+
+    //在相邻两个卡位的状态之间做线性插值：values的下标 = 卡位 + stateOffset
+    public static float interpolate(float[] values, float slot, int stateOffset) {
+        float p = slot + stateOffset;
+        int last = values.length - 1;
+
+        if (p <= 0) {
+            return values[0];
+        } else if (p >= last) {
+            return values[last];
+        }
+
+        int low = (int) p;
+        return values[low] + (values[low + 1] - values[low]) * (p - low);
+    }
+
+    //在透明度、缩放的曲线上取值
+    public static float interpolateProfile(float[] profile, float depth) {
+        int low = Math.min((int) depth, profile.length - 2);
+        return profile[low] + (profile[low + 1] - profile[low]) * (depth - low);
+    }
+
+    //层级：隐藏位和主图在同一层（顶层），后面的依次降低
+    public static float getSlotZ(float slot, int visibleCount) {
+        return Math.max(0f, visibleCount - Math.max(0f, slot));
+    }
+
+}
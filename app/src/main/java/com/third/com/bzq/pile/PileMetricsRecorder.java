@@ -0,0 +1,121 @@
+package com.third.com.bzq.pile;
+
+import android.view.Choreographer;
+
+/**
+ * 轮播图-性能统计
+ * <p>
+ * 一次手势（拖动到归位）或一次过渡（定时翻页到归位）为一个统计周期：
+ * 通过Choreographer统计期间的帧数与超时帧数，并累计各环节的耗时、绑定次数与翻页次数，结束时输出快照。
+ */
+
+final class PileMetricsRecorder implements Choreographer.FrameCallback {
+
+    //统计的环节
+    static final int SECTION_LAYOUT = 0;//onLayout
+    static final int SECTION_SCROLL = 1;//handleScrollChangeIng
+    static final int SECTION_SCROLL_END = 2;//handleScrollChangeEnd（含其中的绑定）
+    static final int SECTION_BIND = 3;//adapter绑定
+    private static final int SECTION_COUNT = 4;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private final PileLayout.Metrics listener;
+
+    private boolean isRecording = false;//是否在统计周期中
+    private int type;//手势或过渡
+    private long startNanos;
+    private long lastFrameNanos;
+    private long frameBudgetNanos;//一帧的时间
+    private int frames;//渲染的帧数
+    private int framesOverBudget;//超时的帧数（错过了至少一个垂直同步）
+    private final long[] sectionNanos = new long[SECTION_COUNT];
+    private int binds;//绑定次数
+    private int reorders;//翻页次数（卡槽环转动）
+
+    PileMetricsRecorder(PileLayout.Metrics listener) {
+        this.listener = listener;
+    }
+
+    //开始统计：已在统计中的（如拖动接着归位动画）继续累计
+    void begin(int type, float refreshRate) {
+        if (isRecording) {
+            return;
+        }
+
+        isRecording = true;
+        this.type = type;
+        startNanos = System.nanoTime();
+        lastFrameNanos = 0;
+        frameBudgetNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+        frames = 0;
+        framesOverBudget = 0;
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sectionNanos[i] = 0;
+        }
+        binds = 0;
+        reorders = 0;
+
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    //结束统计，输出快照
+    void end(int timerTicksExecuted, int timerTicksSkipped) {
+        if (!isRecording) {
+            return;
+        }
+
+        isRecording = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+
+        listener.onMetrics(new PileLayout.MetricsSnapshot(type,
+                (System.nanoTime() - startNanos) / 1000000L,
+                frames,
+                framesOverBudget,
+                sectionNanos[SECTION_LAYOUT] / 1000L,
+                sectionNanos[SECTION_SCROLL] / 1000L,
+                sectionNanos[SECTION_SCROLL_END] / 1000L,
+                sectionNanos[SECTION_BIND] / 1000L,
+                binds,
+                reorders,
+                timerTicksExecuted,
+                timerTicksSkipped));
+    }
+
+    //累计环节耗时
+    void addSection(int section, long nanos) {
+        if (isRecording) {
+            sectionNanos[section] += nanos;
+        }
+    }
+
+    void onBind() {
+        if (isRecording) {
+            binds++;
+        }
+    }
+
+    void onReorder() {
+        if (isRecording) {
+            reorders++;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!isRecording) {
+            return;
+        }
+
+        if (lastFrameNanos > 0) {
+            frames++;
+            if (frameTimeNanos - lastFrameNanos > frameBudgetNanos * 3 / 2) {
+                framesOverBudget++;
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+}
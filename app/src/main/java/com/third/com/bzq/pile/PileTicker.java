@@ -0,0 +1,122 @@
+package com.third.com.bzq.pile;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * 轮播图-全局定时器
+ * <p>
+ * 所有PileLayout共用一个定时器：只保留一个最早到期的延时消息，到期后在下一帧（Choreographer）统一执行，
+ * BATCH_WINDOW内到期的轮播图合并到同一帧翻页。只在主线程使用。
+ */
+
+final class PileTicker implements Choreographer.FrameCallback {
+
+    private static final long BATCH_WINDOW = 200;//合并窗口：毫秒，这段时间内到期的在同一帧执行
+
+    private static PileTicker instance;
+
+    private final ArrayList<PileLayout> layouts = new ArrayList<>();//已注册的轮播图
+    private long[] dueTimes = new long[8];//对应的到期时间（uptimeMillis），与layouts下标一致
+    private final ArrayList<PileLayout> dueLayouts = new ArrayList<>();//本帧到期的轮播图（复用）
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable wakeUp = new Runnable() {
+        @Override
+        public void run() {
+            if (!isFramePosted) {
+                isFramePosted = true;
+                Choreographer.getInstance().postFrameCallback(PileTicker.this);
+            }
+        }
+    };
+    private boolean isFramePosted = false;//是否已等待下一帧
+
+    private PileTicker() {
+    }
+
+    static PileTicker getInstance() {
+        if (instance == null) {
+            instance = new PileTicker();
+        }
+        return instance;
+    }
+
+    //注册（或重新计时）：delay毫秒后执行第一次
+    void schedule(PileLayout layout, long delay) {
+        int index = layouts.indexOf(layout);
+        if (index < 0) {
+            index = layouts.size();
+            layouts.add(layout);
+
+            if (index >= dueTimes.length) {
+                long[] newDueTimes = new long[dueTimes.length * 2];
+                System.arraycopy(dueTimes, 0, newDueTimes, 0, dueTimes.length);
+                dueTimes = newDueTimes;
+            }
+        }
+
+        dueTimes[index] = SystemClock.uptimeMillis() + delay;
+        reschedule();
+    }
+
+    //取消注册
+    void cancel(PileLayout layout) {
+        int index = layouts.indexOf(layout);
+        if (index < 0) {
+            return;
+        }
+
+        int last = layouts.size() - 1;
+        dueTimes[index] = dueTimes[last];//用最后一个填补
+        layouts.set(index, layouts.get(last));
+        layouts.remove(last);
+
+        reschedule();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isFramePosted = false;
+
+        //先收集到期的，并计算下一次的到期时间；执行过程中可能注册或取消
+        long now = SystemClock.uptimeMillis();
+        int num = layouts.size();
+        for (int i = 0; i < num; i++) {
+            if (dueTimes[i] <= now + BATCH_WINDOW) {
+                PileLayout layout = layouts.get(i);
+                dueTimes[i] = now + layout.getTimerInterval();
+                dueLayouts.add(layout);
+            }
+        }
+
+        for (int i = 0; i < dueLayouts.size(); i++) {
+            dueLayouts.get(i).onTimerTick();//不在屏幕内的，由轮播图自己跳过
+        }
+        dueLayouts.clear();
+
+        reschedule();
+    }
+
+    //只保留一个最早到期的延时消息
+    private void reschedule() {
+        handler.removeCallbacks(wakeUp);
+
+        int num = layouts.size();
+        if (num == 0) {
+            return;
+        }
+
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < num; i++) {
+            earliest = Math.min(earliest, dueTimes[i]);
+        }
+
+        handler.postAtTime(wakeUp, earliest);
+    }
+
+}
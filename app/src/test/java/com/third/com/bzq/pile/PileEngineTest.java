@@ -0,0 +1,264 @@
+package com.third.com.bzq.pile;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 轮播图-计算与状态引擎的单元测试（纯Java，直接在JVM上运行）
+ */
+
+public class PileEngineTest {
+
+    private static final int VISIBLE_COUNT = 3;
+    private static final int ITEM_COUNT = 7;
+    private static final int PAGE_WIDTH = 600;
+    private static final int STACK_STEP = 130;
+    private static final int DRAG_EVENTS = 500;
+
+    //拖动后的变换与拖动的路径无关：500个事件（中途松手翻页）之后，每个卡位的变换都等于新引擎在同一偏移量上直接计算的结果
+    @Test
+    public void transformsDependOnlyOnScrollOffset() {
+        PileEngine engine = newEngine();
+        for (int i = 0; i < DRAG_EVENTS; i++) {
+            engine.scrollBy(dragDelta(i));
+            if (i % 125 == 124) {//中途松手，卡槽环转动
+                engine.settle();
+                bindSlots(engine);
+                engine.scrollBy(dragDelta(i));
+            }
+            engine.computeTransforms();
+        }
+
+        PileEngine expected = newEngine();
+        expected.computeTransforms(engine.getScrollProgress());
+
+        for (int offset = 0; offset < engine.getSlotCount(); offset++) {
+            int slot = engine.getRingSlot(offset);
+            int expectedSlot = expected.getRingSlot(offset);
+            assertEquals("translationX offset=" + offset, expected.getTranslationX(expectedSlot), engine.getTranslationX(slot), 0f);
+            assertEquals("alpha offset=" + offset, expected.getAlpha(expectedSlot), engine.getAlpha(slot), 0f);
+            assertEquals("scale offset=" + offset, expected.getScale(expectedSlot), engine.getScale(slot), 0f);
+        }
+    }
+
+    //静止时的卡位状态：主图1/1，后面依次为透明度0.8、0.4，缩放0.85、0.7，依次错开stackStep
+    @Test
+    public void restStateMatchesProfile() {
+        PileEngine engine = newEngine();
+        engine.computeTransforms(0);
+
+        float[] alphas = {1f, 0.8f, 0.4f};
+        float[] scales = {1f, 0.85f, 0.7f};
+        for (int depth = 0; depth < VISIBLE_COUNT; depth++) {
+            int slot = engine.getRingSlot(PileEngine.FIRST_FRAME_SHOW_INDEX + depth);
+            assertEquals("alpha depth=" + depth, alphas[depth], engine.getAlpha(slot), 1e-6f);
+            assertEquals("scale depth=" + depth, scales[depth], engine.getScale(slot), 1e-6f);
+            assertEquals("translationX depth=" + depth, depth * STACK_STEP, engine.getTranslationX(slot), 1e-3f);
+        }
+
+        int hidden = engine.getRingSlot(0);
+        assertEquals(-PAGE_WIDTH, engine.getTranslationX(hidden), 1e-3f);
+    }
+
+    //拖动过程中不分配对象（JVM支持统计线程分配量时）
+    @Test
+    public void scriptedDragDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        PileEngine engine = newEngine();
+        float[] sink = new float[1];
+        drag(engine, sink);//预热，类加载等的分配不计入
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        drag(engine, sink);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated);
+    }
+
+    //向下取模：与((p % n) + n) % n一致，包括小于等于-n的负数
+    @Test
+    public void dataIndexIsFloorMod() {
+        int[] counts = {1, 2, 3, 7, 1000};
+        for (int n : counts) {
+            for (int p = -3 * n - 5; p <= 3 * n + 5; p++) {
+                assertEquals("position=" + p + " count=" + n, ((p % n) + n) % n, PileMath.getDataIndex(p, n));
+            }
+            assertEquals(((Integer.MIN_VALUE % n) + n) % n, PileMath.getDataIndex(Integer.MIN_VALUE, n));
+            assertEquals(((Integer.MAX_VALUE % n) + n) % n, PileMath.getDataIndex(Integer.MAX_VALUE, n));
+        }
+        assertEquals(-1, PileMath.getDataIndex(5, 0));
+    }
+
+    //向左翻页只有转到最后面的卡槽需要重新绑定
+    @Test
+    public void pageLeftLeavesOneStaleSlot() {
+        PileEngine engine = newEngine();
+        bindSlots(engine);
+
+        engine.pageLeft();
+
+        int stale = 0;
+        for (int i = 0; i < engine.getSlotCount(); i++) {
+            if (engine.isSlotStale(i)) {
+                stale++;
+            }
+        }
+        assertEquals(1, stale);
+    }
+
+    //拖动不到一页后反向甩回：归位，不翻到反方向
+    @Test
+    public void backwardFlingAfterPartialDragSnapsBack() {
+        PileEngine engine = new PileEngine(VISIBLE_COUNT);
+        engine.setGeometry(1000, STACK_STEP);
+        engine.setItemCount(ITEM_COUNT);
+
+        engine.scrollBy(-800);
+        assertEquals(PileEngine.PAGE_NONE, engine.decidePages(1200, 1100));
+
+        engine.setScrollOffset(800);
+        assertEquals(PileEngine.PAGE_NONE, engine.decidePages(-1200, 1100));
+    }
+
+    //与拖动方向一致的甩动：至少翻一页
+    @Test
+    public void forwardFlingPagesAtLeastOnce() {
+        PileEngine engine = new PileEngine(VISIBLE_COUNT);
+        engine.setGeometry(1000, STACK_STEP);
+        engine.setItemCount(ITEM_COUNT);
+
+        engine.scrollBy(-100);
+        assertEquals(PileEngine.PAGE_LEFT, engine.decidePages(-1200, 1100));
+
+        engine.setScrollOffset(0);
+        assertEquals(PileEngine.PAGE_RIGHT, engine.decidePages(1200, 1100));
+    }
+
+    //无效的尺寸不会留下偏移量
+    @Test
+    public void invalidGeometryKeepsOffset() {
+        PileEngine engine = newEngine();
+
+        engine.setGeometry(-120, STACK_STEP);
+        assertEquals(0f, engine.getScrollOffset(), 0f);
+
+        engine.setGeometry(1000, STACK_STEP);
+        assertEquals(0f, engine.getScrollOffset(), 0f);
+    }
+
+    //随机操作（固定种子）：拖动、松手、跳转、接着拖动、归位，循环与分页数据源，每一步之后检查不变量
+    @Test
+    public void randomOperationsKeepInvariants() {
+        Random random = new Random(20231018L);
+
+        for (int run = 0; run < 200; run++) {
+            int visibleCount = 1 + random.nextInt(5);
+            boolean looping = random.nextBoolean();
+            int itemCount = random.nextInt(12);
+
+            PileEngine engine = new PileEngine(visibleCount);
+            engine.setGeometry(PAGE_WIDTH, STACK_STEP);
+            engine.setLooping(looping);
+            engine.setItemCount(itemCount);
+            bindSlots(engine);
+            String context = "run=" + run + " visibleCount=" + visibleCount + " looping=" + looping + " itemCount=" + itemCount;
+
+            for (int step = 0; step < 200; step++) {
+                int operation = random.nextInt(5);
+                switch (operation) {
+                    case 0://拖动
+                        engine.scrollBy((random.nextFloat() * 2 - 1) * PAGE_WIDTH * 1.5f);
+                        break;
+                    case 1://松手：随机的速度，可能按惯性翻多页
+                        engine.setForcedPage(random.nextInt(4) == 0 ? PileEngine.PAGE_LEFT : PileEngine.PAGE_NONE);
+                        engine.settle((random.nextFloat() * 2 - 1) * 12000, 400);
+                        engine.setForcedPage(PileEngine.PAGE_NONE);
+                        break;
+                    case 2://跳转（可能在未归位时）
+                        engine.jumpBy(random.nextInt(41) - 20);
+                        break;
+                    case 3://归位途中按下，接着拖动
+                        engine.normalizeScrollOffset();
+                        break;
+                    default://归位动画进行到一部分或结束
+                        engine.setScrollOffset(engine.getScrollOffset() * random.nextInt(2) * random.nextFloat());
+                        break;
+                }
+
+                String where = context + " step=" + step + " operation=" + operation;
+                assertInvariants(engine, where);
+
+                bindSlots(engine);
+                for (int i = 0; i < engine.getSlotCount(); i++) {
+                    assertFalse(where + " slot " + i + " stale after rebinding", engine.isSlotStale(i));
+                }
+            }
+        }
+    }
+
+    private static void assertInvariants(PileEngine engine, String where) {
+        int slotCount = engine.getSlotCount();
+
+        //卡槽环从环头开始连续
+        int first = engine.getSlotPosition(engine.getRingSlot(0));
+        for (int offset = 1; offset < slotCount; offset++) {
+            assertEquals(where + " ring offset " + offset, first + offset, engine.getSlotPosition(engine.getRingSlot(offset)));
+        }
+
+        //目标索引在数据范围内，或者为NO_INDEX
+        for (int i = 0; i < slotCount; i++) {
+            int dataIndex = engine.getTargetDataIndex(i);
+            assertTrue(where + " slot " + i + " dataIndex=" + dataIndex,
+                    dataIndex == PileEngine.NO_INDEX || (dataIndex >= 0 && dataIndex < engine.getItemCount()));
+        }
+
+        //偏移量最多visibleCount页
+        assertTrue(where + " scrollOffset=" + engine.getScrollOffset(),
+                Math.abs(engine.getScrollOffset()) <= engine.getVisibleCount() * engine.getPageWidth());
+    }
+
+    private static PileEngine newEngine() {
+        PileEngine engine = new PileEngine(VISIBLE_COUNT);
+        engine.setGeometry(PAGE_WIDTH, STACK_STEP);
+        engine.setItemCount(ITEM_COUNT);
+        bindSlots(engine);
+        return engine;
+    }
+
+    private static void bindSlots(PileEngine engine) {
+        for (int i = 0; i < engine.getSlotCount(); i++) {
+            engine.setBoundDataIndex(i, engine.getTargetDataIndex(i));
+        }
+    }
+
+    //第i个事件的位移：左右来回，覆盖两个方向与一页的边界
+    private static float dragDelta(int i) {
+        return (float) (Math.sin(i * 0.05) * 37.5);
+    }
+
+    private static void drag(PileEngine engine, float[] sink) {
+        int slotCount = engine.getSlotCount();
+        for (int i = 0; i < DRAG_EVENTS; i++) {
+            engine.scrollBy(dragDelta(i));
+            engine.computeTransforms();
+            for (int slot = 0; slot < slotCount; slot++) {
+                sink[0] += engine.getTranslationX(slot) + engine.getAlpha(slot) + engine.getScale(slot);
+            }
+        }
+    }
+
+}
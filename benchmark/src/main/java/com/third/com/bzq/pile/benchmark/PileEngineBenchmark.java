@@ -0,0 +1,155 @@
+package com.third.com.bzq.pile.benchmark;
+
+import com.third.com.bzq.pile.PileEngine;
+import com.third.com.bzq.pile.PileMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轮播图核心计算的基准测试：索引换算、卡槽环转动、跳转、卡位变换、拖动手势、定时翻页1000次
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PileEngineBenchmark {
+
+    private static final int PAGE_WIDTH = 1000;
+    private static final int STACK_OFFSET = 130;//imageInterval + imageStackOffset
+
+    @Param({"3", "5"})
+    public int visibleCount;
+
+    @Param({"7", "1000"})
+    public int itemCount;
+
+    private PileEngine engine;
+    private int[] positions;//正负混合的轮播图索引
+    private float progress;
+    private float dragStep = -37;//拖动手势每个事件的距离
+
+    @Setup
+    public void setUp() {
+        engine = newEngine();
+
+        positions = new int[1024];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (i * 7919) % 5000 - 2500;
+        }
+    }
+
+    //索引换算（每次调用换算1024个）
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void getDataIndex(Blackhole blackhole) {
+        for (int position : positions) {
+            blackhole.consume(PileMath.getDataIndex(position, itemCount));
+        }
+    }
+
+    //向左翻页：卡槽环转动 + 增量绑定
+    @Benchmark
+    public int rotateLeft() {
+        engine.pageLeft();
+        engine.setScrollOffset(0);
+        return bindSlots(engine);
+    }
+
+    //向右翻页：卡槽环转动 + 增量绑定
+    @Benchmark
+    public int rotateRight() {
+        engine.pageRight();
+        engine.setScrollOffset(0);
+        return bindSlots(engine);
+    }
+
+    //跳转38页：直接分配卡槽的索引，只绑定一次
+    @Benchmark
+    public int jumpFar() {
+        engine.jumpBy(38);
+        engine.setScrollOffset(0);
+        return bindSlots(engine);
+    }
+
+    //一帧的卡位变换（拖动中每个事件执行一次）
+    @Benchmark
+    public float applyTransforms() {
+        progress += 0.013f;
+        if (progress > 1f) {
+            progress = -1f;
+        }
+        engine.computeTransforms(progress);
+        return engine.getTranslationX(1);
+    }
+
+    //拖动手势：每个事件累计偏移量并计算变换，拖过半页后松手翻页
+    @Benchmark
+    public int dragGesture() {
+        engine.scrollBy(dragStep);
+        engine.computeTransforms();
+
+        if (Math.abs(engine.getScrollOffset()) >= PAGE_WIDTH * 0.6f) {//松手
+            int page = engine.settle();
+            engine.setScrollOffset(0);
+            bindSlots(engine);
+            dragStep = -dragStep;//换个方向
+            return page;
+        }
+        return 0;
+    }
+
+    //定时翻页1000次：每次翻页后归位
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int timerRun1000Pages() {
+        PileEngine run = newEngine();
+        run.setForcedPage(PileEngine.PAGE_LEFT);//定时器强制向左翻页
+
+        int binds = 0;
+        for (int i = 0; i < 1000; i++) {
+            run.settle();
+            run.setScrollOffset(0);
+            binds += bindSlots(run);
+            run.computeTransforms();
+        }
+        return binds;
+    }
+
+    private PileEngine newEngine() {
+        PileEngine engine = new PileEngine(visibleCount);
+        engine.setGeometry(PAGE_WIDTH, STACK_OFFSET);
+        engine.setItemCount(itemCount);
+        bindSlots(engine);
+        return engine;
+    }
+
+    //增量绑定：只记录数据库索引发生变化的卡槽，返回绑定的个数
+    private static int bindSlots(PileEngine engine) {
+        int binds = 0;
+        for (int i = 0; i < engine.getSlotCount(); i++) {
+            if (engine.isSlotStale(i)) {
+                engine.setBoundDataIndex(i, engine.getTargetDataIndex(i));
+                binds++;
+            }
+        }
+        return binds;
+    }
+
+}